@@ -0,0 +1,44 @@
+package ua.mctv32.kpi.security;
+
+import jakarta.servlet.FilterChain;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import ua.mctv32.kpi.service.JwtFixtures;
+import ua.mctv32.kpi.service.JwtService;
+
+import java.io.IOException;
+import java.time.Clock;
+
+@State(Scope.Thread)
+public class JwtAuthenticationFilterBenchmark {
+
+    private JwtAuthenticationFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private FilterChain filterChain;
+
+    @Setup
+    public void setUp() {
+        JwtService jwtService = JwtFixtures.jwtService(Clock.systemUTC(), false);
+        filter = new JwtAuthenticationFilter(jwtService, new SimpleMeterRegistry());
+        request = new MockHttpServletRequest("GET", "/users/me");
+        request.addHeader(JwtAuthenticationFilter.AUTH_HEADER,
+                JwtAuthenticationFilter.BEARER_PREFIX + jwtService.generateAccessToken(JwtFixtures.user()));
+        response = new MockHttpServletResponse();
+        filterChain = (req, res) -> {
+        };
+    }
+
+    @Benchmark
+    public void doFilterInternal() throws ServletException, IOException {
+        filter.doFilterInternal(request, response, filterChain);
+        SecurityContextHolder.clearContext();
+    }
+}
@@ -0,0 +1,27 @@
+package ua.mctv32.kpi.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.core.GrantedAuthority;
+import ua.mctv32.kpi.domain.Role;
+
+import java.util.Collection;
+import java.util.Set;
+
+@State(Scope.Benchmark)
+public class UserAuthenticationBenchmark {
+
+    private UserAuthentication userAuthentication;
+
+    @Setup
+    public void setUp() {
+        userAuthentication = new UserAuthentication(1L, "test@example.com", Set.of(Role.ROLE_USER, Role.ROLE_ADMIN));
+    }
+
+    @Benchmark
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return userAuthentication.getAuthorities();
+    }
+}
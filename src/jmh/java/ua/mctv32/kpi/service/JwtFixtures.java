@@ -0,0 +1,57 @@
+package ua.mctv32.kpi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.util.AlternativeJdkIdGenerator;
+import ua.mctv32.kpi.domain.Role;
+import ua.mctv32.kpi.domain.User;
+import ua.mctv32.kpi.security.JwtKey;
+import ua.mctv32.kpi.security.JwtKeySet;
+import ua.mctv32.kpi.security.JwtSigningProperties;
+import ua.mctv32.kpi.security.VerifiedTokenCache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+public final class JwtFixtures {
+
+    public static final String SECRET = "SomeVeryVeryVeryVeryVeryVeryVerySecretJwtSecretKey";
+    public static final long ACCESS_TTL_MS = Duration.ofMinutes(5).toMillis();
+    public static final long REFRESH_TTL_MS = Duration.ofDays(30).toMillis();
+
+    private JwtFixtures() {
+    }
+
+    public static JwtService jwtService(Clock clock, boolean cacheEnabled) {
+        VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache(cacheEnabled, 10_000, clock, new SimpleMeterRegistry());
+        // nothing is revoked, so the empty Bloom filter answers every check without a repository
+        ClusterInvalidationService clusterInvalidationService = new ClusterInvalidationService(null, "jdbc:h2:mem:",
+                null, null, false, "kpi_invalidation", 50, 1000, 1000, 30_000, new SimpleMeterRegistry());
+        TokenRevocationService tokenRevocationService = new TokenRevocationService(null, clock,
+                clusterInvalidationService, 100_000, 0.001, new SimpleMeterRegistry());
+        return new JwtService(new JwtKeySet(SECRET, new JwtSigningProperties(null, 0, List.of())), ACCESS_TTL_MS, REFRESH_TTL_MS, JwtKey.COMPACT_FORMAT, new ObjectMapper(), clock, verifiedTokenCache,
+                new AlternativeJdkIdGenerator(), tokenRevocationService, new SimpleMeterRegistry());
+    }
+
+    public static User user() {
+        return User.builder()
+                .id(1L)
+                .email("test@example.com")
+                .password("encoded-password")
+                .roles(Set.of(Role.ROLE_USER, Role.ROLE_ADMIN))
+                .build();
+    }
+
+    public static String expiredAccessToken() {
+        Clock past = Clock.offset(Clock.systemUTC(), Duration.ofHours(-1));
+        return jwtService(past, false).generateAccessToken(user());
+    }
+
+    public static String tamperedAccessToken(String accessToken) {
+        int signatureStart = accessToken.lastIndexOf('.') + 1;
+        char first = accessToken.charAt(signatureStart);
+        return accessToken.substring(0, signatureStart) + (first == 'A' ? 'B' : 'A') + accessToken.substring(signatureStart + 1);
+    }
+}
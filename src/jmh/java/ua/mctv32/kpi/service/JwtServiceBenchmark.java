@@ -0,0 +1,66 @@
+package ua.mctv32.kpi.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ua.mctv32.kpi.domain.User;
+import ua.mctv32.kpi.security.UserAuthentication;
+
+import java.time.Clock;
+import java.util.Optional;
+import java.util.UUID;
+
+@State(Scope.Benchmark)
+public class JwtServiceBenchmark {
+
+    @Param({"false", "true"})
+    private boolean cacheEnabled;
+
+    private JwtService jwtService;
+    private Clock clock;
+    private User user;
+    private UUID tokenId;
+    private UUID familyId;
+    private String validToken;
+    private String expiredToken;
+    private String tamperedToken;
+
+    @Setup
+    public void setUp() {
+        clock = Clock.systemUTC();
+        jwtService = JwtFixtures.jwtService(clock, cacheEnabled);
+        user = JwtFixtures.user();
+        tokenId = UUID.randomUUID();
+        familyId = UUID.randomUUID();
+        validToken = jwtService.generateAccessToken(user);
+        expiredToken = JwtFixtures.expiredAccessToken();
+        tamperedToken = JwtFixtures.tamperedAccessToken(validToken);
+    }
+
+    @Benchmark
+    public String generateAccessToken() {
+        return jwtService.generateAccessToken(user);
+    }
+
+    @Benchmark
+    public String generateRefreshToken() {
+        return jwtService.generateRefreshToken(user, clock.instant(), tokenId, familyId);
+    }
+
+    @Benchmark
+    public Optional<UserAuthentication> toAuthenticationValid() {
+        return jwtService.toAuthentication(validToken);
+    }
+
+    @Benchmark
+    public Optional<UserAuthentication> toAuthenticationExpired() {
+        return jwtService.toAuthentication(expiredToken);
+    }
+
+    @Benchmark
+    public Optional<UserAuthentication> toAuthenticationTampered() {
+        return jwtService.toAuthentication(tamperedToken);
+    }
+}
@@ -0,0 +1,121 @@
+package ua.mctv32.kpi.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the application jar in a separate JVM so that every mode under test gets a fresh process.
+ */
+final class AppProcess implements AutoCloseable {
+
+    private final Process process;
+    private final URI baseUri;
+    private final Path logFile;
+
+    private AppProcess(Process process, URI baseUri, Path logFile) {
+        this.process = process;
+        this.baseUri = baseUri;
+        this.logFile = logFile;
+    }
+
+    static AppProcess start(Path appJar, int port, List<String> jvmArgs, List<String> appArgs, Path logFile)
+            throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-jar");
+        command.add(appJar.toString());
+        command.add("--server.port=" + port);
+        command.addAll(appArgs);
+
+        Files.createDirectories(logFile.getParent());
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile())
+                .start();
+        return new AppProcess(process, URI.create("http://localhost:" + port), logFile);
+    }
+
+    URI baseUri() {
+        return baseUri;
+    }
+
+    Path logFile() {
+        return logFile;
+    }
+
+    long pid() {
+        return process.pid();
+    }
+
+    /**
+     * Polls the health endpoint and returns the time it took for the first successful response.
+     */
+    Duration awaitReady(Duration timeout) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/actuator/health"))
+                .timeout(Duration.ofSeconds(2))
+                .build();
+        long startedAt = process.info().startInstant().map(it -> it.toEpochMilli()).orElse(System.currentTimeMillis());
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited with code " + process.exitValue() + ", see " + logFile);
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return Duration.ofMillis(System.currentTimeMillis() - startedAt);
+                }
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(20);
+        }
+        throw new IllegalStateException("Application did not become ready within " + timeout + ", see " + logFile);
+    }
+
+    /**
+     * Resident set size of the application process in kilobytes, or -1 when not available.
+     */
+    long residentSetSizeKb() {
+        return readStatus("VmRSS:");
+    }
+
+    /**
+     * Live threads of the application process, or -1 when not available.
+     */
+    long threadCount() {
+        return readStatus("Threads:");
+    }
+
+    private long readStatus(String field) {
+        Path status = Path.of("/proc", String.valueOf(process.pid()), "status");
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith(field)) {
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        process.destroy();
+        if (!process.waitFor(30, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package ua.mctv32.kpi.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Minimal client for the auth endpoints. Every call returns the HTTP status so that callers
+ * can count failures instead of handling exceptions.
+ */
+final class AuthClient {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private final HttpClient client;
+    private final URI baseUri;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    AuthClient(HttpClient client, URI baseUri) {
+        this.client = client;
+        this.baseUri = baseUri;
+    }
+
+    Response login(String email, String password) throws IOException, InterruptedException {
+        return post("/auth/login", Map.of("email", email, "password", password));
+    }
+
+    Response refresh(String refreshToken) throws IOException, InterruptedException {
+        return post("/auth/refresh", Map.of("refreshToken", refreshToken));
+    }
+
+    int me(String accessToken) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/users/me"))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Authorization", "Bearer " + accessToken)
+                .GET()
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private Response post(String path, Map<String, String> body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            return new Response(response.statusCode(), null, null);
+        }
+        JsonNode json = objectMapper.readTree(response.body());
+        return new Response(200, json.path("accessToken").asText(null), json.path("refreshToken").asText(null));
+    }
+
+    record Response(int status, String accessToken, String refreshToken) {
+
+        boolean isOk() {
+            return status == 200;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ua.mctv32.kpi.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Keeps a fixed number of requests in flight, one virtual thread per simulated connection.
+ * A closed model is what we want here: it shows how many concurrent connections a mode sustains.
+ */
+final class ClosedLoopRunner {
+
+    private ClosedLoopRunner() {
+    }
+
+    static Result run(String scenario, int concurrency, Duration warmup, Duration duration,
+                      IntFunction<Operation> operations) throws InterruptedException {
+        Recorder recorder = new Recorder(3);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicBoolean measuring = new AtomicBoolean(false);
+        LongAdder requests = new LongAdder();
+        LongAdder errors = new LongAdder();
+
+        long elapsedNanos;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                Operation operation = operations.apply(i);
+                executor.submit(() -> {
+                    while (running.get()) {
+                        long startedAt = System.nanoTime();
+                        boolean success;
+                        try {
+                            success = operation.execute();
+                        } catch (Exception e) {
+                            success = false;
+                        }
+                        if (measuring.get()) {
+                            recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startedAt));
+                            requests.increment();
+                            if (!success) {
+                                errors.increment();
+                            }
+                        }
+                    }
+                });
+            }
+
+            Thread.sleep(warmup.toMillis());
+            recorder.reset();
+            measuring.set(true);
+            long measuredFrom = System.nanoTime();
+            Thread.sleep(duration.toMillis());
+            measuring.set(false);
+            elapsedNanos = System.nanoTime() - measuredFrom;
+            running.set(false);
+        }
+
+        Histogram histogram = recorder.getIntervalHistogram();
+        double seconds = elapsedNanos / 1e9;
+        return new Result(scenario, concurrency, requests.sum(), errors.sum(), requests.sum() / seconds, histogram);
+    }
+
+    @FunctionalInterface
+    interface Operation {
+
+        /**
+         * @return whether the request succeeded
+         */
+        boolean execute() throws Exception;
+    }
+
+    record Result(String scenario, int concurrency, long requests, long errors, double throughput, Histogram latencyMicros) {
+
+        double errorRate() {
+            return requests == 0 ? 1 : (double) errors / requests;
+        }
+
+        double percentileMillis(double percentile) {
+            return latencyMicros.getValueAtPercentile(percentile) / 1000.0;
+        }
+    }
+}
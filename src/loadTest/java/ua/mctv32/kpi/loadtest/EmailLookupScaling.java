@@ -0,0 +1,121 @@
+package ua.mctv32.kpi.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.flywaydb.core.Flyway;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grows the users table step by step and times the login lookup by email at every size, with the same
+ * statement Hibernate issues for {@code UserRepository.findByEmail}. The lookup is served by the unique
+ * email index, so its latency should stay flat; the run fails when the p50 at the largest volume exceeds
+ * {@code loadtest.max-growth} times the p50 at the smallest, or when the plan is not an index scan.
+ * <p>
+ * Migrates and wipes its own schema ({@code loadtest.db.schema}) in the Postgres from
+ * {@code docker/docker-compose.yaml}. Run with {@code ./gradlew emailLookupScalingTest}.
+ */
+public final class EmailLookupScaling {
+
+    private static final String DB_URL = System.getProperty("loadtest.db.url", "jdbc:postgresql://localhost:5432/kpi");
+    private static final String DB_USER = System.getProperty("loadtest.db.username", "postgres");
+    private static final String DB_PASSWORD = System.getProperty("loadtest.db.password", "postgres");
+    private static final String SCHEMA = System.getProperty("loadtest.db.schema", "email_lookup_scaling");
+    private static final int[] VOLUMES = Arrays.stream(System.getProperty("loadtest.volumes", "1000,10000,100000,1000000")
+            .split(",")).mapToInt(it -> Integer.parseInt(it.trim())).toArray();
+    private static final int LOOKUPS = Integer.getInteger("loadtest.lookups", 20_000);
+    private static final double MAX_GROWTH = Double.parseDouble(System.getProperty("loadtest.max-growth", "2"));
+
+    private static final String LOOKUP = "select u.id, u.email, u.password from users u where u.email = ?";
+
+    private EmailLookupScaling() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path reportDir = Path.of(System.getProperty("loadtest.report-dir", "build/reports/loadtest"));
+        String url = DB_URL + (DB_URL.contains("?") ? "&" : "?") + "currentSchema=" + SCHEMA;
+
+        Flyway flyway = Flyway.configure()
+                .dataSource(DB_URL, DB_USER, DB_PASSWORD)
+                .schemas(SCHEMA)
+                .cleanDisabled(false)
+                .load();
+        flyway.clean();
+        flyway.migrate();
+
+        UserSeeder seeder = new UserSeeder(url, DB_USER, DB_PASSWORD);
+        List<Step> steps = new ArrayList<>();
+        int seeded = 0;
+        for (int volume : VOLUMES) {
+            System.out.printf("Seeding %d users%n", volume);
+            seeder.seedRange(seeded, volume);
+            seeded = volume;
+            steps.add(measure(url, volume));
+        }
+
+        StringBuilder csv = new StringBuilder("users,lookups,p50_us,p99_us,max_us,plan\n");
+        for (Step step : steps) {
+            csv.append(String.format(Locale.ROOT, "%d,%d,%d,%d,%d,\"%s\"%n", step.users(), LOOKUPS,
+                    step.latencyMicros().getValueAtPercentile(50), step.latencyMicros().getValueAtPercentile(99),
+                    step.latencyMicros().getMaxValue(), step.plan()));
+        }
+        Files.createDirectories(reportDir);
+        Path csvFile = reportDir.resolve("email-lookup-scaling.csv");
+        Files.writeString(csvFile, csv);
+        System.out.println();
+        System.out.println(csv);
+        System.out.println("Report written to " + csvFile);
+
+        long smallest = steps.get(0).latencyMicros().getValueAtPercentile(50);
+        long largest = steps.get(steps.size() - 1).latencyMicros().getValueAtPercentile(50);
+        boolean indexed = steps.stream().allMatch(step -> step.plan().contains("Index"));
+        if (!indexed || largest > smallest * MAX_GROWTH) {
+            System.out.printf(Locale.ROOT, "FAILED: p50 grew from %d us to %d us (limit x%.1f), index scans: %s%n",
+                    smallest, largest, MAX_GROWTH, indexed);
+            System.exit(1);
+        }
+    }
+
+    private static Step measure(String url, int users) throws Exception {
+        Histogram histogram = new Histogram(TimeUnit.SECONDS.toMicros(10), 3);
+        String plan;
+        try (Connection connection = DriverManager.getConnection(url, DB_USER, DB_PASSWORD);
+             PreparedStatement lookup = connection.prepareStatement(LOOKUP);
+             PreparedStatement explain = connection.prepareStatement("explain " + LOOKUP)) {
+            explain.setString(1, UserSeeder.volumeEmail(users / 2));
+            try (ResultSet resultSet = explain.executeQuery()) {
+                resultSet.next();
+                plan = resultSet.getString(1).trim();
+            }
+            // the first lookups warm up the connection and the server side prepared statement
+            for (int i = -LOOKUPS / 10; i < LOOKUPS; i++) {
+                lookup.setString(1, UserSeeder.volumeEmail(ThreadLocalRandom.current().nextInt(users)));
+                long startedAt = System.nanoTime();
+                try (ResultSet resultSet = lookup.executeQuery()) {
+                    if (!resultSet.next()) {
+                        throw new IllegalStateException("Seeded user not found");
+                    }
+                }
+                if (i >= 0) {
+                    histogram.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startedAt));
+                }
+            }
+        }
+        System.out.printf(Locale.ROOT, "%8d users: p50 %d us, p99 %d us, plan: %s%n", users,
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99), plan);
+        return new Step(users, histogram, plan);
+    }
+
+    private record Step(int users, Histogram latencyMicros, String plan) {
+    }
+}
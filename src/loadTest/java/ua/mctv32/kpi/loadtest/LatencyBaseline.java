@@ -0,0 +1,78 @@
+package ua.mctv32.kpi.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Latency and throughput of a {@link LatencyRegressionGate} run, stored as JSON. Results are only
+ * comparable with a baseline recorded at the same rate and mix, on the same machine class.
+ */
+record LatencyBaseline(double rate, String mix, Map<String, ScenarioLatency> scenarios) {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    static LatencyBaseline of(double rate, String mix, Map<String, OpenModelRunner.Result> results) {
+        Map<String, ScenarioLatency> scenarios = new LinkedHashMap<>();
+        results.forEach((name, result) -> scenarios.put(name, new ScenarioLatency(result.throughput(),
+                result.percentileMillis(50), result.percentileMillis(99), result.percentileMillis(99.9))));
+        return new LatencyBaseline(rate, mix, scenarios);
+    }
+
+    static LatencyBaseline read(Path file) throws IOException {
+        return OBJECT_MAPPER.readValue(file.toFile(), LatencyBaseline.class);
+    }
+
+    void write(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        OBJECT_MAPPER.writeValue(file.toFile(), this);
+    }
+
+    /**
+     * Percentiles more than {@code margin} above the baseline and throughput more than {@code margin}
+     * below it. Latency differences under {@code slackMs} are ignored, sub-millisecond percentiles
+     * are too noisy for a relative margin.
+     */
+    List<String> regressions(LatencyBaseline current, double margin, double slackMs) {
+        List<String> regressions = new ArrayList<>();
+        if (rate != current.rate() || !mix.equals(current.mix())) {
+            regressions.add(String.format(Locale.ROOT, "baseline was recorded at %.0f req/s with mix %s, the run used"
+                    + " %.0f req/s with mix %s", rate, mix, current.rate(), current.mix()));
+            return regressions;
+        }
+        scenarios.forEach((name, expected) -> {
+            ScenarioLatency actual = current.scenarios().get(name);
+            if (actual == null) {
+                regressions.add(name + ": missing from the run");
+                return;
+            }
+            checkLatency(regressions, name, "p50", expected.p50Ms(), actual.p50Ms(), margin, slackMs);
+            checkLatency(regressions, name, "p99", expected.p99Ms(), actual.p99Ms(), margin, slackMs);
+            checkLatency(regressions, name, "p999", expected.p999Ms(), actual.p999Ms(), margin, slackMs);
+            if (actual.throughput() < expected.throughput() * (1 - margin)) {
+                regressions.add(String.format(Locale.ROOT, "%s: throughput %.1f req/s is below baseline %.1f req/s - %.0f%%",
+                        name, actual.throughput(), expected.throughput(), margin * 100));
+            }
+        });
+        return regressions;
+    }
+
+    private static void checkLatency(List<String> regressions, String scenario, String percentile, double expectedMs,
+                                     double actualMs, double margin, double slackMs) {
+        if (actualMs > expectedMs * (1 + margin) && actualMs - expectedMs > slackMs) {
+            regressions.add(String.format(Locale.ROOT, "%s: %s %.2f ms exceeds baseline %.2f ms + %.0f%%",
+                    scenario, percentile, actualMs, expectedMs, margin * 100));
+        }
+    }
+
+    record ScenarioLatency(double throughput, double p50Ms, double p99Ms, double p999Ms) {
+    }
+}
@@ -0,0 +1,206 @@
+package ua.mctv32.kpi.loadtest;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import ua.mctv32.kpi.KpiApplication;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Drives a mix of {@code /auth/login}, {@code /auth/refresh} and {@code /users/me} at a fixed arrival rate
+ * with {@link OpenModelRunner}, reports the p50, p99 and p99.9 latency and the throughput of every endpoint,
+ * and fails when they regress past the stored baseline by more than {@code loadtest.regression-margin}.
+ * Without a baseline, or with {@code -Dloadtest.update-baseline=true}, the results become the new baseline.
+ * <p>
+ * With {@code -Dloadtest.db=postgres} the application jar runs against the Postgres from
+ * {@code docker/docker-compose.yaml}; the default {@code embedded} runs it in this JVM on an in-memory H2
+ * in PostgreSQL mode, which needs no setup but shares the CPU with the load generator, so keep separate
+ * baselines for the two. Run with {@code ./gradlew latencyRegressionTest}, settings are passed as
+ * {@code -Dloadtest.*} system properties.
+ */
+public final class LatencyRegressionGate {
+
+    private static final boolean EMBEDDED = !"postgres".equals(System.getProperty("loadtest.db", "embedded"));
+    private static final String DB_URL = System.getProperty("loadtest.db.url",
+            EMBEDDED ? "jdbc:h2:mem:kpi;MODE=PostgreSQL;DB_CLOSE_DELAY=-1" : "jdbc:postgresql://localhost:5432/kpi");
+    private static final String DB_USER = System.getProperty("loadtest.db.username", EMBEDDED ? "sa" : "postgres");
+    private static final String DB_PASSWORD = System.getProperty("loadtest.db.password", EMBEDDED ? "" : "postgres");
+    private static final int PORT = Integer.getInteger("loadtest.port", 18080);
+    private static final int USERS = Integer.getInteger("loadtest.users", 200);
+    // refresh tokens rotate, every session is used by one refresh at a time
+    private static final int SESSIONS = Integer.getInteger("loadtest.sessions", 200);
+    private static final double RATE = Double.parseDouble(System.getProperty("loadtest.rate", "200"));
+    private static final String MIX = System.getProperty("loadtest.mix", "login:5,refresh:15,me:80");
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("loadtest.max-in-flight", 2000);
+    private static final Duration WARMUP = Duration.ofSeconds(Long.getLong("loadtest.warmup-seconds", 15));
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("loadtest.duration-seconds", 60));
+    private static final long SEED = Long.getLong("loadtest.seed", 42);
+    private static final double MARGIN = Double.parseDouble(System.getProperty("loadtest.regression-margin", "0.2"));
+    private static final double SLACK_MS = Double.parseDouble(System.getProperty("loadtest.regression-slack-ms", "1"));
+    private static final double MAX_ERROR_RATE = Double.parseDouble(System.getProperty("loadtest.max-error-rate", "0.01"));
+    private static final boolean UPDATE_BASELINE = Boolean.getBoolean("loadtest.update-baseline");
+
+    private LatencyRegressionGate() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path reportDir = Path.of(System.getProperty("loadtest.report-dir", "build/reports/loadtest"));
+        Path baselineFile = Path.of(System.getProperty("loadtest.baseline", "src/loadTest/latency-baseline.json"));
+
+        Map<String, OpenModelRunner.Result> results = run(reportDir);
+        LatencyBaseline current = LatencyBaseline.of(RATE, MIX, results);
+
+        StringBuilder csv = new StringBuilder("scenario,requests,errors,dropped,throughput,p50_ms,p99_ms,p999_ms,max_ms\n");
+        for (OpenModelRunner.Result result : results.values()) {
+            csv.append(String.format(Locale.ROOT, "%s,%d,%d,%d,%.1f,%.2f,%.2f,%.2f,%.2f%n", result.scenario(),
+                    result.requests(), result.errors(), result.dropped(), result.throughput(), result.percentileMillis(50),
+                    result.percentileMillis(99), result.percentileMillis(99.9), result.percentileMillis(100)));
+        }
+        Files.createDirectories(reportDir);
+        Files.writeString(reportDir.resolve("latency-regression.csv"), csv);
+        current.write(reportDir.resolve("latency-current.json"));
+        System.out.println();
+        System.out.println(csv);
+
+        List<String> failures = new ArrayList<>();
+        for (OpenModelRunner.Result result : results.values()) {
+            if (result.errorRate() > MAX_ERROR_RATE) {
+                failures.add(String.format(Locale.ROOT, "%s: error rate %.2f%% exceeds %.2f%% (%d failed, %d not sent)",
+                        result.scenario(), result.errorRate() * 100, MAX_ERROR_RATE * 100, result.errors(), result.dropped()));
+            }
+        }
+        if (UPDATE_BASELINE || !Files.exists(baselineFile)) {
+            if (failures.isEmpty()) {
+                current.write(baselineFile);
+                System.out.println("Baseline written to " + baselineFile);
+            }
+        } else {
+            failures.addAll(LatencyBaseline.read(baselineFile).regressions(current, MARGIN, SLACK_MS));
+        }
+
+        if (!failures.isEmpty()) {
+            System.out.println("Latency regression gate failed:");
+            failures.forEach(it -> System.out.println("  " + it));
+            System.exit(1);
+        }
+        System.out.println("Latency regression gate passed");
+    }
+
+    private static Map<String, OpenModelRunner.Result> run(Path reportDir) throws Exception {
+        List<String> args = new ArrayList<>();
+        args.add("--server.port=" + PORT);
+        args.add("--spring.datasource.url=" + DB_URL);
+        args.add("--spring.datasource.username=" + DB_USER);
+        args.add("--spring.datasource.password=" + DB_PASSWORD);
+        args.add("--spring.jpa.show-sql=false");
+        // every virtual user logs in from localhost
+        args.add("--security.login-throttle.enabled=false");
+
+        try (AutoCloseable app = EMBEDDED ? startEmbedded(args) : startProcess(args, reportDir);
+             HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build()) {
+            List<String> emails = new UserSeeder(DB_URL, DB_USER, DB_PASSWORD).seed(USERS);
+            AuthClient client = new AuthClient(httpClient, URI.create("http://localhost:" + PORT));
+            Sessions sessions = new Sessions(VirtualThreadsComparison.login(client, emails, SESSIONS));
+
+            List<OpenModelRunner.Scenario> scenarios = new ArrayList<>();
+            for (String entry : MIX.split(",")) {
+                String[] nameAndWeight = entry.trim().split(":");
+                String name = nameAndWeight[0];
+                ClosedLoopRunner.Operation operation = switch (name) {
+                    case "login" -> () -> client.login(randomEmail(emails), UserSeeder.PASSWORD).isOk();
+                    case "refresh" -> () -> sessions.refresh(client, randomEmail(emails));
+                    case "me" -> () -> client.me(sessions.randomAccessToken()) == 200;
+                    default -> throw new IllegalArgumentException("Unknown scenario " + name + " in loadtest.mix");
+                };
+                scenarios.add(new OpenModelRunner.Scenario(name, Integer.parseInt(nameAndWeight[1]), operation));
+            }
+
+            System.out.printf(Locale.ROOT, "%.0f req/s with mix %s, %d s warmup and %d s measured%n",
+                    RATE, MIX, WARMUP.toSeconds(), DURATION.toSeconds());
+            return OpenModelRunner.run(scenarios, RATE, MAX_IN_FLIGHT, WARMUP, DURATION, SEED);
+        }
+    }
+
+    private static AutoCloseable startEmbedded(List<String> args) {
+        List<String> embeddedArgs = new ArrayList<>(args);
+        embeddedArgs.add("--spring.main.banner-mode=off");
+        embeddedArgs.add("--logging.level.root=warn");
+        return new SpringApplicationBuilder(KpiApplication.class).run(embeddedArgs.toArray(String[]::new));
+    }
+
+    private static AutoCloseable startProcess(List<String> args, Path reportDir) throws Exception {
+        Path appJar = Path.of(System.getProperty("loadtest.app-jar"));
+        // the port is passed by AppProcess
+        List<String> appArgs = args.subList(1, args.size());
+        AppProcess app = AppProcess.start(appJar, PORT, List.of(), appArgs, reportDir.resolve("app-latency-regression.log"));
+        try {
+            app.awaitReady(Duration.ofMinutes(2));
+        } catch (RuntimeException | InterruptedException e) {
+            app.close();
+            throw e;
+        }
+        return app;
+    }
+
+    private static String randomEmail(List<String> emails) {
+        return emails.get(ThreadLocalRandom.current().nextInt(emails.size()));
+    }
+
+    /**
+     * Access tokens are shared by the {@code /users/me} requests, refresh tokens are handed out one at a time
+     * since a refresh token used twice revokes its family.
+     */
+    private static final class Sessions {
+
+        private final AtomicReferenceArray<String> accessTokens;
+        private final Queue<Session> idle = new ConcurrentLinkedQueue<>();
+
+        Sessions(List<AuthClient.Response> logins) {
+            accessTokens = new AtomicReferenceArray<>(logins.size());
+            for (int i = 0; i < logins.size(); i++) {
+                accessTokens.set(i, logins.get(i).accessToken());
+                idle.add(new Session(i, logins.get(i).refreshToken()));
+            }
+        }
+
+        String randomAccessToken() {
+            return accessTokens.get(ThreadLocalRandom.current().nextInt(accessTokens.length()));
+        }
+
+        /**
+         * Without an idle session the client logs in instead, as one without a refresh token would.
+         */
+        boolean refresh(AuthClient client, String email) throws Exception {
+            Session session = idle.poll();
+            if (session == null) {
+                return client.login(email, UserSeeder.PASSWORD).isOk();
+            }
+            AuthClient.Response response = client.refresh(session.refreshToken());
+            if (!response.isOk()) {
+                response = client.login(email, UserSeeder.PASSWORD);
+                if (response.isOk()) {
+                    accessTokens.set(session.slot(), response.accessToken());
+                    idle.add(new Session(session.slot(), response.refreshToken()));
+                }
+                return false;
+            }
+            accessTokens.set(session.slot(), response.accessToken());
+            idle.add(new Session(session.slot(), response.refreshToken()));
+            return true;
+        }
+
+        private record Session(int slot, String refreshToken) {
+        }
+    }
+}
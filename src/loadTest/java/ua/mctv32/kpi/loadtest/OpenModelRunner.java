@@ -0,0 +1,135 @@
+package ua.mctv32.kpi.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests at a fixed arrival rate no matter how fast the application answers, an open model.
+ * Latency is measured from the time a request was due to be sent rather than from when it was sent,
+ * so a stall shows up in the percentiles instead of quietly lowering the request rate (coordinated omission).
+ * Every request runs on its own virtual thread; requests that would exceed {@code maxInFlight} are not
+ * sent and count as errors.
+ */
+final class OpenModelRunner {
+
+    private OpenModelRunner() {
+    }
+
+    static Map<String, Result> run(List<Scenario> scenarios, double ratePerSecond, int maxInFlight,
+                                   Duration warmup, Duration duration, long seed) {
+        Map<String, Scenario> byName = new LinkedHashMap<>();
+        Map<String, Stats> stats = new LinkedHashMap<>();
+        int totalWeight = 0;
+        for (Scenario scenario : scenarios) {
+            byName.put(scenario.name(), scenario);
+            stats.put(scenario.name(), new Stats());
+            totalWeight += scenario.weight();
+        }
+
+        long intervalNanos = Math.round(TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        SplittableRandom random = new SplittableRandom(seed);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long startedAt = System.nanoTime();
+        long measuredFrom = startedAt + warmup.toNanos();
+        long endsAt = measuredFrom + duration.toNanos();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; ; i++) {
+                long dueAt = startedAt + i * intervalNanos;
+                if (dueAt >= endsAt) {
+                    break;
+                }
+                // behind schedule after a pause: send right away, the latency still counts from dueAt
+                for (long delay = dueAt - System.nanoTime(); delay > 0; delay = dueAt - System.nanoTime()) {
+                    LockSupport.parkNanos(delay);
+                }
+
+                Scenario scenario = pick(scenarios, random.nextInt(totalWeight));
+                Stats scenarioStats = stats.get(scenario.name());
+                boolean measured = dueAt >= measuredFrom;
+                if (!inFlight.tryAcquire()) {
+                    if (measured) {
+                        scenarioStats.dropped.increment();
+                    }
+                    continue;
+                }
+                executor.submit(() -> {
+                    boolean success;
+                    try {
+                        success = scenario.operation().execute();
+                    } catch (Exception e) {
+                        success = false;
+                    } finally {
+                        inFlight.release();
+                    }
+                    if (measured) {
+                        scenarioStats.recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - dueAt));
+                        scenarioStats.requests.increment();
+                        if (!success) {
+                            scenarioStats.errors.increment();
+                        }
+                    }
+                });
+            }
+        }
+
+        double seconds = duration.toNanos() / 1e9;
+        Map<String, Result> results = new LinkedHashMap<>();
+        stats.forEach((name, it) -> {
+            long requests = it.requests.sum();
+            results.put(name, new Result(name, requests, it.errors.sum(), it.dropped.sum(),
+                    requests / seconds, it.recorder.getIntervalHistogram()));
+        });
+        return results;
+    }
+
+    private static Scenario pick(List<Scenario> scenarios, int ticket) {
+        for (Scenario scenario : scenarios) {
+            ticket -= scenario.weight();
+            if (ticket < 0) {
+                return scenario;
+            }
+        }
+        throw new IllegalStateException("Weights do not add up");
+    }
+
+    /**
+     * {@code weight} is the share of the arrivals relative to the other scenarios of the mix.
+     */
+    record Scenario(String name, int weight, ClosedLoopRunner.Operation operation) {
+    }
+
+    private static final class Stats {
+        private final Recorder recorder = new Recorder(3);
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+    }
+
+    /**
+     * {@code throughput} counts the answered requests per second, failed ones included.
+     */
+    record Result(String scenario, long requests, long errors, long dropped, double throughput, Histogram latencyMicros) {
+
+        double errorRate() {
+            long attempts = requests + dropped;
+            return attempts == 0 ? 1 : (double) (errors + dropped) / attempts;
+        }
+
+        double percentileMillis(double percentile) {
+            return latencyMicros.getValueAtPercentile(percentile) / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package ua.mctv32.kpi.loadtest;
+
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Drives {@code /users/me} and {@code /auth/refresh} on the servlet stack, with platform and with virtual
+ * request threads, and on the {@code reactive} profile, up to 10k concurrent connections. Next to the
+ * latency of every level it records the resident set size and the thread count of the application,
+ * the cost of holding the connections open.
+ * <p>
+ * Requires the Postgres from {@code docker/docker-compose.yaml}. Run with {@code ./gradlew reactiveStackLoadTest},
+ * settings are passed as {@code -Dloadtest.*} system properties. Every connection logs in once before the
+ * first level, at 10k connections that takes a few minutes of BCrypt.
+ */
+public final class ReactiveStackComparison {
+
+    private static final String DB_URL = System.getProperty("loadtest.db.url", "jdbc:postgresql://localhost:5432/kpi");
+    private static final String DB_USER = System.getProperty("loadtest.db.username", "postgres");
+    private static final String DB_PASSWORD = System.getProperty("loadtest.db.password", "postgres");
+    private static final int PORT = Integer.getInteger("loadtest.port", 18080);
+    private static final int USERS = Integer.getInteger("loadtest.users", 200);
+    private static final int[] CONCURRENCY = Arrays.stream(System.getProperty("loadtest.concurrency", "1000,5000,10000")
+            .split(",")).mapToInt(it -> Integer.parseInt(it.trim())).toArray();
+    private static final Duration WARMUP = Duration.ofSeconds(Long.getLong("loadtest.warmup-seconds", 5));
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("loadtest.duration-seconds", 20));
+    private static final double P99_SLO_MS = Double.parseDouble(System.getProperty("loadtest.p99-slo-ms", "250"));
+    private static final double MAX_ERROR_RATE = 0.01;
+
+    private ReactiveStackComparison() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path appJar = Path.of(System.getProperty("loadtest.app-jar"));
+        Path reportDir = Path.of(System.getProperty("loadtest.report-dir", "build/reports/loadtest"));
+
+        // Tomcat accepts 8192 connections by default, lift the limit so that all stacks hold the same load
+        List<String> servletArgs = List.of("--server.tomcat.max-connections=20000", "--server.tomcat.accept-count=1000");
+        List<Level> levels = new ArrayList<>();
+        levels.addAll(runMode("servlet", appJar, reportDir, servletArgs));
+        levels.addAll(runMode("servlet-virtual-threads", appJar, reportDir,
+                List.of("--spring.profiles.active=virtual-threads")));
+        levels.addAll(runMode("reactive", appJar, reportDir, List.of("--spring.profiles.active=reactive",
+                "--spring.r2dbc.url=" + DB_URL.replaceFirst("^jdbc:", "r2dbc:"),
+                "--spring.r2dbc.username=" + DB_USER,
+                "--spring.r2dbc.password=" + DB_PASSWORD)));
+
+        StringBuilder csv = new StringBuilder(
+                "mode,scenario,concurrency,requests,errors,throughput,p50_ms,p99_ms,max_ms,rss_mb,threads\n");
+        for (Level level : levels) {
+            ClosedLoopRunner.Result result = level.result();
+            csv.append(String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.1f,%.2f,%.2f,%.2f,%d,%d%n", level.mode(),
+                    result.scenario(), result.concurrency(), result.requests(), result.errors(), result.throughput(),
+                    result.percentileMillis(50), result.percentileMillis(99), result.percentileMillis(100),
+                    level.rssKb() / 1024, level.threads()));
+        }
+        Path csvFile = reportDir.resolve("reactive-stack.csv");
+        Files.writeString(csvFile, csv);
+
+        System.out.println();
+        System.out.println(csv);
+        for (String mode : List.of("servlet", "servlet-virtual-threads", "reactive")) {
+            for (String scenario : List.of("users-me", "auth-refresh")) {
+                int maxConcurrency = levels.stream()
+                        .filter(it -> it.mode().equals(mode) && it.result().scenario().equals(scenario))
+                        .map(Level::result)
+                        .filter(it -> it.errorRate() < MAX_ERROR_RATE && it.percentileMillis(99) <= P99_SLO_MS)
+                        .mapToInt(ClosedLoopRunner.Result::concurrency)
+                        .max()
+                        .orElse(0);
+                System.out.printf(Locale.ROOT, "%-24s %-13s max concurrent connections within p99 <= %.0f ms: %d%n",
+                        mode, scenario, P99_SLO_MS, maxConcurrency);
+            }
+        }
+        System.out.println("Report written to " + csvFile);
+    }
+
+    private static List<Level> runMode(String mode, Path appJar, Path reportDir, List<String> appArgs) throws Exception {
+        List<String> args = new ArrayList<>(appArgs);
+        args.add("--spring.datasource.url=" + DB_URL);
+        args.add("--spring.datasource.username=" + DB_USER);
+        args.add("--spring.datasource.password=" + DB_PASSWORD);
+        args.add("--spring.jpa.show-sql=false");
+        // every virtual user logs in from localhost
+        args.add("--security.login-throttle.enabled=false");
+
+        List<Level> levels = new ArrayList<>();
+        Path logFile = reportDir.resolve("app-" + mode + ".log");
+        try (AppProcess app = AppProcess.start(appJar, PORT, List.of(), args, logFile);
+             HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build()) {
+            app.awaitReady(Duration.ofMinutes(2));
+            List<String> emails = new UserSeeder(DB_URL, DB_USER, DB_PASSWORD).seed(USERS);
+            AuthClient client = new AuthClient(httpClient, app.baseUri());
+
+            int maxConcurrency = Arrays.stream(CONCURRENCY).max().orElse(1);
+            List<AuthClient.Response> sessions = VirtualThreadsComparison.login(client, emails, maxConcurrency);
+
+            for (int concurrency : CONCURRENCY) {
+                System.out.printf("[%s] users-me at %d connections%n", mode, concurrency);
+                ClosedLoopRunner.Result result = ClosedLoopRunner.run("users-me", concurrency, WARMUP, DURATION,
+                        worker -> {
+                            String accessToken = sessions.get(worker).accessToken();
+                            return () -> client.me(accessToken) == 200;
+                        });
+                levels.add(new Level(mode, result, app.residentSetSizeKb(), app.threadCount()));
+            }
+            for (int concurrency : CONCURRENCY) {
+                System.out.printf("[%s] auth-refresh at %d connections%n", mode, concurrency);
+                ClosedLoopRunner.Result result = ClosedLoopRunner.run("auth-refresh", concurrency, WARMUP, DURATION,
+                        worker -> {
+                            String email = emails.get(worker % emails.size());
+                            String[] refreshToken = {sessions.get(worker).refreshToken()};
+                            return () -> {
+                                AuthClient.Response response = client.refresh(refreshToken[0]);
+                                if (response.isOk()) {
+                                    refreshToken[0] = response.refreshToken();
+                                    return true;
+                                }
+                                AuthClient.Response relogin = client.login(email, UserSeeder.PASSWORD);
+                                if (relogin.isOk()) {
+                                    refreshToken[0] = relogin.refreshToken();
+                                }
+                                return false;
+                            };
+                        });
+                levels.add(new Level(mode, result, app.residentSetSizeKb(), app.threadCount()));
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * Memory and threads are sampled right after the level, the client keeps its connections open in between.
+     */
+    private record Level(String mode, ClosedLoopRunner.Result result, long rssKb, long threads) {
+    }
+}
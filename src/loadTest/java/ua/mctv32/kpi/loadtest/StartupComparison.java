@@ -0,0 +1,86 @@
+package ua.mctv32.kpi.loadtest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Starts the standard boot jar and the fast-start artifact (AOT-processed, extracted, with a CDS archive)
+ * alternately and records the time from process start to the first successful health check and the
+ * resident set size at that moment.
+ * <p>
+ * Requires the Postgres from {@code docker/docker-compose.yaml}. Run with {@code ./gradlew startupBenchmark},
+ * settings are passed as {@code -Dloadtest.*} system properties.
+ */
+public final class StartupComparison {
+
+    private static final String DB_URL = System.getProperty("loadtest.db.url", "jdbc:postgresql://localhost:5432/kpi");
+    private static final String DB_USER = System.getProperty("loadtest.db.username", "postgres");
+    private static final String DB_PASSWORD = System.getProperty("loadtest.db.password", "postgres");
+    private static final int PORT = Integer.getInteger("loadtest.port", 18080);
+    private static final int RUNS = Integer.getInteger("loadtest.startup.runs", 5);
+
+    private StartupComparison() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path appJar = Path.of(System.getProperty("loadtest.app-jar"));
+        Path fastStartJar = Path.of(System.getProperty("loadtest.fast-start-jar"));
+        Path cdsArchive = Path.of(System.getProperty("loadtest.cds-archive"));
+        Path reportDir = Path.of(System.getProperty("loadtest.report-dir", "build/reports/loadtest"));
+
+        List<Mode> modes = List.of(
+                new Mode("standard", appJar, List.of()),
+                new Mode("fast-start", fastStartJar,
+                        List.of("-XX:SharedArchiveFile=" + cdsArchive, "-Dspring.aot.enabled=true")));
+
+        StringBuilder csv = new StringBuilder("mode,run,ready_ms,rss_kb\n");
+        List<List<Sample>> samples = new ArrayList<>();
+        modes.forEach(mode -> samples.add(new ArrayList<>()));
+        // alternate the modes so that both see the same machine state
+        for (int run = 1; run <= RUNS; run++) {
+            for (int i = 0; i < modes.size(); i++) {
+                Mode mode = modes.get(i);
+                Sample sample = start(mode, reportDir);
+                samples.get(i).add(sample);
+                csv.append(String.format(Locale.ROOT, "%s,%d,%d,%d%n", mode.name(), run, sample.readyMillis(), sample.rssKb()));
+                System.out.printf(Locale.ROOT, "[%s] run %d: ready in %d ms, RSS %d MB%n",
+                        mode.name(), run, sample.readyMillis(), sample.rssKb() / 1024);
+            }
+        }
+        Path csvFile = reportDir.resolve("startup.csv");
+        Files.writeString(csvFile, csv);
+
+        System.out.println();
+        System.out.printf("%-11s %14s %14s %14s %16s%n", "mode", "ready p50 ms", "ready min ms", "ready max ms", "RSS p50 MB");
+        for (int i = 0; i < modes.size(); i++) {
+            List<Long> ready = samples.get(i).stream().map(Sample::readyMillis).sorted().toList();
+            List<Long> rss = samples.get(i).stream().map(Sample::rssKb).sorted().toList();
+            System.out.printf(Locale.ROOT, "%-11s %14d %14d %14d %16d%n", modes.get(i).name(),
+                    ready.get(ready.size() / 2), ready.get(0), ready.get(ready.size() - 1), rss.get(rss.size() / 2) / 1024);
+        }
+        System.out.println("Report written to " + csvFile);
+    }
+
+    private static Sample start(Mode mode, Path reportDir) throws Exception {
+        List<String> args = List.of(
+                "--spring.datasource.url=" + DB_URL,
+                "--spring.datasource.username=" + DB_USER,
+                "--spring.datasource.password=" + DB_PASSWORD,
+                "--spring.jpa.show-sql=false");
+        Path logFile = reportDir.resolve("app-startup-" + mode.name() + ".log");
+        try (AppProcess app = AppProcess.start(mode.jar(), PORT, mode.jvmArgs(), args, logFile)) {
+            Duration ready = app.awaitReady(Duration.ofMinutes(2));
+            return new Sample(ready.toMillis(), app.residentSetSizeKb());
+        }
+    }
+
+    private record Mode(String name, Path jar, List<String> jvmArgs) {
+    }
+
+    private record Sample(long readyMillis, long rssKb) {
+    }
+}
@@ -0,0 +1,86 @@
+package ua.mctv32.kpi.loadtest;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inserts load test users straight into the database, there is no public registration endpoint.
+ */
+final class UserSeeder {
+
+    static final String PASSWORD = "load-test-password";
+
+    private final String url;
+    private final String username;
+    private final String password;
+
+    UserSeeder(String url, String username, String password) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+
+    List<String> seed(int count) throws SQLException {
+        String encodedPassword = new BCryptPasswordEncoder().encode(PASSWORD);
+        List<String> emails = new ArrayList<>(count);
+        try (Connection connection = DriverManager.getConnection(url, username, password);
+             PreparedStatement insertUser = connection.prepareStatement(
+                     "insert into users (id, email, password) values (nextval('users_seq'), ?, ?)", new String[]{"id"});
+             PreparedStatement insertRole = connection.prepareStatement(
+                     "insert into user_roles (user_id, role) values (?, 'ROLE_USER')")) {
+            connection.setAutoCommit(false);
+            for (int i = 0; i < count; i++) {
+                String email = "load-test-" + i + "-" + System.nanoTime() + "@example.com";
+                insertUser.setString(1, email);
+                insertUser.setString(2, encodedPassword);
+                insertUser.executeUpdate();
+                try (ResultSet keys = insertUser.getGeneratedKeys()) {
+                    keys.next();
+                    insertRole.setLong(1, keys.getLong(1));
+                }
+                insertRole.addBatch();
+                emails.add(email);
+            }
+            insertRole.executeBatch();
+            connection.commit();
+        }
+        return emails;
+    }
+
+    /**
+     * Inserts users {@code volume-<from>@example.com} to {@code volume-<to - 1>@example.com} server-side,
+     * fast enough to grow the table to millions of rows.
+     */
+    void seedRange(int from, int to) throws SQLException {
+        String encodedPassword = new BCryptPasswordEncoder().encode(PASSWORD);
+        try (Connection connection = DriverManager.getConnection(url, username, password);
+             PreparedStatement insertUsers = connection.prepareStatement(
+                     "insert into users (id, email, password) "
+                             + "select nextval('users_seq'), 'volume-' || g || '@example.com', ? from generate_series(?, ?) g");
+             PreparedStatement insertRoles = connection.prepareStatement(
+                     "insert into user_roles (user_id, role) select u.id, 'ROLE_USER' from users u "
+                             + "where not exists (select 1 from user_roles r where r.user_id = u.id)");
+             PreparedStatement analyze = connection.prepareStatement("analyze users")) {
+            connection.setAutoCommit(false);
+            insertUsers.setString(1, encodedPassword);
+            insertUsers.setInt(2, from);
+            insertUsers.setInt(3, to - 1);
+            insertUsers.executeUpdate();
+            insertRoles.executeUpdate();
+            connection.commit();
+            connection.setAutoCommit(true);
+            analyze.execute();
+        }
+    }
+
+    static String volumeEmail(int index) {
+        return "volume-" + index + "@example.com";
+    }
+}
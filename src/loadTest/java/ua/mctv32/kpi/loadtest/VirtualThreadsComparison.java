@@ -0,0 +1,170 @@
+package ua.mctv32.kpi.loadtest;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Starts the application once with platform request threads and once with the {@code virtual-threads}
+ * profile, then drives {@code /users/me} and {@code /auth/refresh} at increasing concurrency levels.
+ * <p>
+ * Requires the Postgres from {@code docker/docker-compose.yaml}. Run with {@code ./gradlew virtualThreadsLoadTest},
+ * settings are passed as {@code -Dloadtest.*} system properties.
+ */
+public final class VirtualThreadsComparison {
+
+    private static final String DB_URL = System.getProperty("loadtest.db.url", "jdbc:postgresql://localhost:5432/kpi");
+    private static final String DB_USER = System.getProperty("loadtest.db.username", "postgres");
+    private static final String DB_PASSWORD = System.getProperty("loadtest.db.password", "postgres");
+    private static final int PORT = Integer.getInteger("loadtest.port", 18080);
+    private static final int USERS = Integer.getInteger("loadtest.users", 200);
+    private static final int[] CONCURRENCY = Arrays.stream(System.getProperty("loadtest.concurrency", "50,200,800,2000")
+            .split(",")).mapToInt(it -> Integer.parseInt(it.trim())).toArray();
+    private static final Duration WARMUP = Duration.ofSeconds(Long.getLong("loadtest.warmup-seconds", 5));
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("loadtest.duration-seconds", 20));
+    private static final double P99_SLO_MS = Double.parseDouble(System.getProperty("loadtest.p99-slo-ms", "250"));
+    private static final double MAX_ERROR_RATE = 0.01;
+
+    private VirtualThreadsComparison() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path appJar = Path.of(System.getProperty("loadtest.app-jar"));
+        Path reportDir = Path.of(System.getProperty("loadtest.report-dir", "build/reports/loadtest"));
+
+        List<ModeReport> reports = new ArrayList<>();
+        reports.add(runMode("platform", appJar, reportDir, List.of(), List.of()));
+        reports.add(runMode("virtual-threads", appJar, reportDir,
+                List.of("-Djdk.tracePinnedThreads=short"), List.of("--spring.profiles.active=virtual-threads")));
+
+        StringBuilder csv = new StringBuilder("mode,scenario,concurrency,requests,errors,throughput,p50_ms,p99_ms,max_ms\n");
+        for (ModeReport report : reports) {
+            for (ClosedLoopRunner.Result result : report.results()) {
+                csv.append(String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.1f,%.2f,%.2f,%.2f%n", report.mode(),
+                        result.scenario(), result.concurrency(), result.requests(), result.errors(), result.throughput(),
+                        result.percentileMillis(50), result.percentileMillis(99), result.percentileMillis(100)));
+            }
+        }
+        Path csvFile = reportDir.resolve("virtual-threads.csv");
+        Files.writeString(csvFile, csv);
+
+        System.out.println();
+        System.out.println(csv);
+        for (ModeReport report : reports) {
+            for (String scenario : List.of("users-me", "auth-refresh")) {
+                System.out.printf(Locale.ROOT, "%-16s %-13s max concurrent connections within p99 <= %.0f ms: %d%n",
+                        report.mode(), scenario, P99_SLO_MS, report.maxConcurrency(scenario));
+            }
+            System.out.printf(Locale.ROOT, "%-16s pinned thread events: %d%n", report.mode(), report.pinnedEvents());
+        }
+        System.out.println("Report written to " + csvFile);
+    }
+
+    private static ModeReport runMode(String mode, Path appJar, Path reportDir, List<String> jvmArgs,
+                                      List<String> appArgs) throws Exception {
+        List<String> args = new ArrayList<>(appArgs);
+        args.add("--spring.datasource.url=" + DB_URL);
+        args.add("--spring.datasource.username=" + DB_USER);
+        args.add("--spring.datasource.password=" + DB_PASSWORD);
+        args.add("--spring.jpa.show-sql=false");
+        // every virtual user logs in from localhost
+        args.add("--security.login-throttle.enabled=false");
+
+        List<ClosedLoopRunner.Result> results = new ArrayList<>();
+        Path logFile = reportDir.resolve("app-" + mode + ".log");
+        try (AppProcess app = AppProcess.start(appJar, PORT, jvmArgs, args, logFile);
+             HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build()) {
+            app.awaitReady(Duration.ofMinutes(2));
+            List<String> emails = new UserSeeder(DB_URL, DB_USER, DB_PASSWORD).seed(USERS);
+            AuthClient client = new AuthClient(httpClient, app.baseUri());
+
+            int maxConcurrency = Arrays.stream(CONCURRENCY).max().orElse(1);
+            List<AuthClient.Response> sessions = login(client, emails, maxConcurrency);
+
+            for (int concurrency : CONCURRENCY) {
+                System.out.printf("[%s] users-me at %d connections%n", mode, concurrency);
+                results.add(ClosedLoopRunner.run("users-me", concurrency, WARMUP, DURATION, worker -> {
+                    String accessToken = sessions.get(worker).accessToken();
+                    return () -> client.me(accessToken) == 200;
+                }));
+            }
+            for (int concurrency : CONCURRENCY) {
+                System.out.printf("[%s] auth-refresh at %d connections%n", mode, concurrency);
+                results.add(ClosedLoopRunner.run("auth-refresh", concurrency, WARMUP, DURATION, worker -> {
+                    String email = emails.get(worker % emails.size());
+                    String[] refreshToken = {sessions.get(worker).refreshToken()};
+                    return () -> {
+                        AuthClient.Response response = client.refresh(refreshToken[0]);
+                        if (response.isOk()) {
+                            refreshToken[0] = response.refreshToken();
+                            return true;
+                        }
+                        AuthClient.Response relogin = client.login(email, UserSeeder.PASSWORD);
+                        if (relogin.isOk()) {
+                            refreshToken[0] = relogin.refreshToken();
+                        }
+                        return false;
+                    };
+                }));
+            }
+            return new ModeReport(mode, results, countPinnedEvents(app.logFile()));
+        }
+    }
+
+    /**
+     * One session per simulated connection; logins are spread over the users and retried
+     * while the password hashing queue is saturated.
+     */
+    static List<AuthClient.Response> login(AuthClient client, List<String> emails, int sessions) throws Exception {
+        List<Future<AuthClient.Response>> futures = new ArrayList<>(sessions);
+        try (ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors())) {
+            for (int i = 0; i < sessions; i++) {
+                String email = emails.get(i % emails.size());
+                futures.add(executor.submit(() -> {
+                    while (true) {
+                        AuthClient.Response response = client.login(email, UserSeeder.PASSWORD);
+                        if (response.isOk()) {
+                            return response;
+                        }
+                        if (response.status() != 503) {
+                            throw new IllegalStateException("Login failed with status " + response.status());
+                        }
+                        Thread.sleep(100);
+                    }
+                }));
+            }
+        }
+        List<AuthClient.Response> responses = new ArrayList<>(sessions);
+        for (Future<AuthClient.Response> future : futures) {
+            responses.add(future.get());
+        }
+        return responses;
+    }
+
+    private static long countPinnedEvents(Path logFile) throws IOException {
+        try (var lines = Files.lines(logFile)) {
+            return lines.filter(line -> line.startsWith("Thread[#")).count();
+        }
+    }
+
+    private record ModeReport(String mode, List<ClosedLoopRunner.Result> results, long pinnedEvents) {
+
+        int maxConcurrency(String scenario) {
+            return results.stream()
+                    .filter(it -> it.scenario().equals(scenario))
+                    .filter(it -> it.errorRate() < MAX_ERROR_RATE && it.percentileMillis(99) <= P99_SLO_MS)
+                    .mapToInt(ClosedLoopRunner.Result::concurrency)
+                    .max()
+                    .orElse(0);
+        }
+    }
+}
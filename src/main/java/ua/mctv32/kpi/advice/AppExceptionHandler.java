@@ -1,12 +1,17 @@
 package ua.mctv32.kpi.advice;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import ua.mctv32.kpi.dto.ExceptionDto;
 import ua.mctv32.kpi.exception.AuthenticationException;
+import ua.mctv32.kpi.exception.BadRequestException;
 import ua.mctv32.kpi.exception.NotFoundException;
+import ua.mctv32.kpi.exception.ServiceUnavailableException;
+import ua.mctv32.kpi.exception.TooManyRequestsException;
 
 @RestControllerAdvice
 public class AppExceptionHandler {
@@ -21,8 +26,32 @@ public class AppExceptionHandler {
         return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new ExceptionDto(e.getMessage()));
     }
 
+    @ExceptionHandler({AccessDeniedException.class})
+    public ResponseEntity<ExceptionDto> handle(AccessDeniedException e) {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ExceptionDto(e.getMessage()));
+    }
+
+    @ExceptionHandler({BadRequestException.class})
+    public ResponseEntity<ExceptionDto> handle(BadRequestException e) {
+        return ResponseEntity.badRequest().body(new ExceptionDto(e.getMessage()));
+    }
+
     @ExceptionHandler({NotFoundException.class})
     public ResponseEntity<ExceptionDto> handle(NotFoundException e) {
         return ResponseEntity.badRequest().body(new ExceptionDto(e.getMessage()));
     }
+
+    @ExceptionHandler({ServiceUnavailableException.class})
+    public ResponseEntity<ExceptionDto> handle(ServiceUnavailableException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new ExceptionDto(e.getMessage()));
+    }
+
+    @ExceptionHandler({TooManyRequestsException.class})
+    public ResponseEntity<ExceptionDto> handle(TooManyRequestsException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new ExceptionDto(e.getMessage()));
+    }
 }
@@ -1,15 +1,42 @@
 package ua.mctv32.kpi.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.util.AlternativeJdkIdGenerator;
+import org.springframework.util.IdGenerator;
+import ua.mctv32.kpi.security.JwtSigningProperties;
 
 import java.time.Clock;
 
 @Configuration
+@EnableScheduling
+@EnableConfigurationProperties(JwtSigningProperties.class)
 public class AppConfig {
 
     @Bean
     public Clock clock() {
         return Clock.systemDefaultZone();
     }
+
+    @Bean
+    public IdGenerator idGenerator() {
+        return new AlternativeJdkIdGenerator();
+    }
+
+    /**
+     * AOT-processed contexts keep the Flyway beans regardless of {@code spring.flyway.enabled},
+     * the CDS training run, which has no database, turns migrations off through this switch instead.
+     */
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy(@Value("${migrations.enabled}") boolean enabled) {
+        return flyway -> {
+            if (enabled) {
+                flyway.migrate();
+            }
+        };
+    }
 }
@@ -0,0 +1,50 @@
+package ua.mctv32.kpi.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ua.mctv32.kpi.security.CalibratedBCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Password hashing shared by the servlet and the reactive security configuration.
+ */
+@Slf4j
+@Configuration
+public class PasswordConfig {
+
+    @Bean
+    public PasswordEncoder passwordEncoder(@Value("${security.password.bcrypt.strength}") int strength,
+                                           @Value("${security.password.bcrypt.target-hash-ms}") long targetHashMs,
+                                           @Value("${security.password.bcrypt.min-strength}") int minStrength,
+                                           @Value("${security.password.bcrypt.max-strength}") int maxStrength,
+                                           MeterRegistry meterRegistry) {
+        CalibratedBCryptPasswordEncoder passwordEncoder = strength > 0
+                ? CalibratedBCryptPasswordEncoder.withStrength(strength)
+                : CalibratedBCryptPasswordEncoder.calibrate(Duration.ofMillis(targetHashMs), minStrength, maxStrength);
+        log.info("Using BCrypt strength {} ({}), one hash takes {} ms", passwordEncoder.getStrength(),
+                strength > 0 ? "configured" : "calibrated for " + targetHashMs + " ms",
+                passwordEncoder.getHashTime().toMillis());
+        if (passwordEncoder.isNearStrengthStep()) {
+            log.warn("BCrypt calibration measured a hash time close to a cost step, other instances may pick "
+                    + "another strength and rehash passwords on every login they serve; set "
+                    + "security.password.bcrypt.strength when running more than one instance");
+        }
+
+        Gauge.builder("password.bcrypt.strength", passwordEncoder, CalibratedBCryptPasswordEncoder::getStrength)
+                .description("BCrypt cost factor used for new password hashes")
+                .register(meterRegistry);
+        TimeGauge.builder("password.bcrypt.hash.time", passwordEncoder, TimeUnit.NANOSECONDS,
+                        it -> it.getHashTime().toNanos())
+                .description("Time of a single BCrypt hash measured at startup")
+                .register(meterRegistry);
+        return passwordEncoder;
+    }
+}
@@ -0,0 +1,49 @@
+package ua.mctv32.kpi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import ua.mctv32.kpi.security.JwtWebFilter;
+import ua.mctv32.kpi.service.JwtService;
+
+/**
+ * {@link SecurityConfig} of the reactive profile: the same public paths and the same 401 for
+ * missing or invalid tokens, with the JWT check done by {@link JwtWebFilter}.
+ */
+@Configuration
+@Profile("reactive")
+@EnableWebFluxSecurity
+@EnableReactiveMethodSecurity
+public class ReactiveSecurityConfig {
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http, JwtService jwtService,
+                                                         MeterRegistry meterRegistry) {
+        return http
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .logout(ServerHttpSecurity.LogoutSpec::disable)
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .authorizeExchange(registry -> registry
+                        .pathMatchers("/auth/**").permitAll()
+                        // scraped without credentials, keep the management endpoints off the public network
+                        .pathMatchers("/actuator/health", "/actuator/prometheus").permitAll()
+                        .anyExchange().authenticated()
+                )
+                .exceptionHandling(exceptionHandler -> {
+                    exceptionHandler.authenticationEntryPoint(new HttpStatusServerEntryPoint(HttpStatus.UNAUTHORIZED));
+                })
+                .addFilterAt(new JwtWebFilter(jwtService, meterRegistry), SecurityWebFiltersOrder.AUTHENTICATION)
+                .build();
+    }
+}
@@ -1,29 +1,38 @@
 package ua.mctv32.kpi.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.AuthenticationFilter;
 import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import ua.mctv32.kpi.security.ConcurrencyLimitFilter;
+import ua.mctv32.kpi.security.ConcurrencyLimiter;
 import ua.mctv32.kpi.security.JwtAuthenticationFilter;
 
 @Configuration
+@Profile("!reactive")
 @EnableMethodSecurity
 @RequiredArgsConstructor
 public class SecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final ObjectMapper objectMapper;
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   @Value("${security.concurrency-limit.retry-after-seconds}")
+                                                   long concurrencyLimitRetryAfterSeconds) throws Exception {
         http
                 .csrf(AbstractHttpConfigurer::disable)
                 .sessionManagement(sessionConfigurer -> {
@@ -31,19 +40,21 @@ public class SecurityConfig {
                 })
                 .formLogin(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(registry -> registry
+                        // async results (login, streamed responses) were authorized on the initial dispatch
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/auth/**").permitAll()
+                        // scraped without credentials, keep the management endpoints off the public network
+                        .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
                         .anyRequest().authenticated()
                 )
                 .exceptionHandling(exceptionHandler -> {
                     exceptionHandler.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED));
                 })
-                .addFilterAt(jwtAuthenticationFilter, AuthenticationFilter.class);
+                .addFilterAt(jwtAuthenticationFilter, AuthenticationFilter.class)
+                // after the JWT filter, the priority of a request depends on it being authenticated
+                .addFilterAfter(new ConcurrencyLimitFilter(concurrencyLimiter, concurrencyLimitRetryAfterSeconds,
+                        objectMapper), AuthenticationFilter.class);
 
         return http.build();
     }
-
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
 }
@@ -1,24 +1,52 @@
 package ua.mctv32.kpi.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import ua.mctv32.kpi.dto.AuthRequestDto;
 import ua.mctv32.kpi.dto.AuthResponseDto;
 import ua.mctv32.kpi.dto.RefreshTokensRequestDto;
+import ua.mctv32.kpi.dto.TokenIntrospectionRequestDto;
+import ua.mctv32.kpi.dto.TokenIntrospectionResponseDto;
+import ua.mctv32.kpi.exception.AuthenticationException;
+import ua.mctv32.kpi.security.JwtKeySet;
+import ua.mctv32.kpi.security.LoginThrottle;
 import ua.mctv32.kpi.service.AuthService;
+import ua.mctv32.kpi.service.TokenIntrospectionService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static ua.mctv32.kpi.security.JwtAuthenticationFilter.AUTH_HEADER;
+import static ua.mctv32.kpi.security.JwtAuthenticationFilter.BEARER_PREFIX;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/auth")
 @RequiredArgsConstructor
 public class AuthController {
 
     private final AuthService authService;
+    private final LoginThrottle loginThrottle;
+    private final JwtKeySet jwtKeySet;
+    private final TokenIntrospectionService tokenIntrospectionService;
 
     @PostMapping("/login")
-    public AuthResponseDto login(@RequestBody AuthRequestDto authRequestDto) {
+    public CompletableFuture<AuthResponseDto> login(@RequestBody AuthRequestDto authRequestDto, HttpServletRequest request) {
+        loginThrottle.acquire(authRequestDto.getEmail(), request.getRemoteAddr());
         return authService.login(authRequestDto.getEmail(), authRequestDto.getPassword());
     }
 
@@ -26,4 +54,33 @@ public class AuthController {
     public AuthResponseDto refresh(@RequestBody RefreshTokensRequestDto refreshTokensRequestDto) {
         return authService.refreshTokens(refreshTokensRequestDto.getRefreshToken());
     }
+
+    @PostMapping("/logout")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void logout(@RequestHeader(value = AUTH_HEADER, required = false) String authorization,
+                       @RequestBody(required = false) RefreshTokensRequestDto refreshTokensRequestDto) {
+        if (authorization == null || !authorization.startsWith(BEARER_PREFIX)) {
+            throw new AuthenticationException("Invalid access token");
+        }
+        authService.logout(authorization.substring(BEARER_PREFIX.length()),
+                refreshTokensRequestDto == null ? null : refreshTokensRequestDto.getRefreshToken());
+    }
+
+    /**
+     * Verifies up to {@code jwt.introspection.max-tokens} access tokens at once, results are returned
+     * in the order of the request: {@code {"results": [{"active", "userId", "roles", "expiresAt", "reason"}]}}.
+     */
+    @PostMapping("/introspect")
+    @PreAuthorize("hasRole('ADMIN')")
+    public TokenIntrospectionResponseDto introspect(@RequestBody TokenIntrospectionRequestDto tokenIntrospectionRequestDto) {
+        return new TokenIntrospectionResponseDto(
+                tokenIntrospectionService.introspect(tokenIntrospectionRequestDto.getTokens()));
+    }
+
+    @GetMapping("/jwks")
+    public ResponseEntity<Map<String, List<Map<String, ?>>>> jwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(jwtKeySet.jwksMaxAgeSeconds())).cachePublic())
+                .body(Map.of("keys", jwtKeySet.jwks()));
+    }
 }
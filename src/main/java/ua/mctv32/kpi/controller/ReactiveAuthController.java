@@ -0,0 +1,90 @@
+package ua.mctv32.kpi.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ua.mctv32.kpi.dto.AuthRequestDto;
+import ua.mctv32.kpi.dto.AuthResponseDto;
+import ua.mctv32.kpi.dto.RefreshTokensRequestDto;
+import ua.mctv32.kpi.dto.TokenIntrospectionRequestDto;
+import ua.mctv32.kpi.dto.TokenIntrospectionResponseDto;
+import ua.mctv32.kpi.exception.AuthenticationException;
+import ua.mctv32.kpi.security.JwtKeySet;
+import ua.mctv32.kpi.security.LoginThrottle;
+import ua.mctv32.kpi.service.ReactiveAuthService;
+import ua.mctv32.kpi.service.TokenIntrospectionService;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static ua.mctv32.kpi.security.JwtAuthenticationFilter.AUTH_HEADER;
+import static ua.mctv32.kpi.security.JwtAuthenticationFilter.BEARER_PREFIX;
+
+@RestController
+@Profile("reactive")
+@RequestMapping("/auth")
+@RequiredArgsConstructor
+public class ReactiveAuthController {
+
+    private final ReactiveAuthService reactiveAuthService;
+    private final LoginThrottle loginThrottle;
+    private final JwtKeySet jwtKeySet;
+    private final TokenIntrospectionService tokenIntrospectionService;
+
+    @PostMapping("/login")
+    public Mono<AuthResponseDto> login(@RequestBody AuthRequestDto authRequestDto, ServerHttpRequest request) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        loginThrottle.acquire(authRequestDto.getEmail(),
+                remoteAddress == null ? null : remoteAddress.getAddress().getHostAddress());
+        return reactiveAuthService.login(authRequestDto.getEmail(), authRequestDto.getPassword());
+    }
+
+    @PostMapping("/refresh")
+    public Mono<AuthResponseDto> refresh(@RequestBody RefreshTokensRequestDto refreshTokensRequestDto) {
+        return reactiveAuthService.refreshTokens(refreshTokensRequestDto.getRefreshToken());
+    }
+
+    @PostMapping("/logout")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> logout(@RequestHeader(value = AUTH_HEADER, required = false) String authorization,
+                             @RequestBody(required = false) RefreshTokensRequestDto refreshTokensRequestDto) {
+        if (authorization == null || !authorization.startsWith(BEARER_PREFIX)) {
+            throw new AuthenticationException("Invalid access token");
+        }
+        return reactiveAuthService.logout(authorization.substring(BEARER_PREFIX.length()),
+                refreshTokensRequestDto == null ? null : refreshTokensRequestDto.getRefreshToken());
+    }
+
+    /**
+     * Revocation lookups may block, the batch is verified off the event loop.
+     */
+    @PostMapping("/introspect")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<TokenIntrospectionResponseDto> introspect(@RequestBody TokenIntrospectionRequestDto tokenIntrospectionRequestDto) {
+        return Mono.fromCallable(() -> new TokenIntrospectionResponseDto(
+                        tokenIntrospectionService.introspect(tokenIntrospectionRequestDto.getTokens())))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @GetMapping("/jwks")
+    public ResponseEntity<Map<String, List<Map<String, ?>>>> jwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(Duration.ofSeconds(jwtKeySet.jwksMaxAgeSeconds())).cachePublic())
+                .body(Map.of("keys", jwtKeySet.jwks()));
+    }
+}
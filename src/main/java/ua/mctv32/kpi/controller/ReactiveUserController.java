@@ -0,0 +1,102 @@
+package ua.mctv32.kpi.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ua.mctv32.kpi.dto.UserBatchRequestDto;
+import ua.mctv32.kpi.dto.UserBatchResponseDto;
+import ua.mctv32.kpi.dto.UserDto;
+import ua.mctv32.kpi.dto.UserImportReportDto;
+import ua.mctv32.kpi.dto.UserPageDto;
+import ua.mctv32.kpi.security.UserAuthentication;
+import ua.mctv32.kpi.service.ReactiveUserService;
+import ua.mctv32.kpi.service.UserImportService;
+
+import java.io.InputStream;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+
+@RestController
+@Profile("reactive")
+@RequestMapping("/users")
+@RequiredArgsConstructor
+public class ReactiveUserController {
+
+    // buffers requested from the body ahead of the import reading them
+    private static final int IMPORT_DEMAND = 16;
+
+    private final ReactiveUserService reactiveUserService;
+    private final UserImportService userImportService;
+
+    @GetMapping("/me")
+    public Mono<UserDto> me(UserAuthentication authentication) {
+        return reactiveUserService.findById(authentication.getId());
+    }
+
+    /**
+     * Same contract as {@link UserController#list}.
+     */
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<UserPageDto> list(@RequestParam(required = false) Long after,
+                                  @RequestParam(required = false) Integer limit) {
+        return reactiveUserService.findPage(after, limit);
+    }
+
+    /**
+     * Same contract as {@link UserController#export}, rows are read from the database as the client
+     * consumes the response.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public Flux<UserDto> export() {
+        return reactiveUserService.exportAll();
+    }
+
+    /**
+     * Same contract as {@link UserController#batch}, the response is written once all chunks are loaded.
+     */
+    @PostMapping("/batch")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<UserBatchResponseDto> batch(@RequestBody UserBatchRequestDto userBatchRequestDto) {
+        Set<Long> ids = new LinkedHashSet<>();
+        if (userBatchRequestDto.getIds() != null) {
+            userBatchRequestDto.getIds().stream().filter(Objects::nonNull).forEach(ids::add);
+        }
+        return reactiveUserService.findAllByIds(ids);
+    }
+
+    /**
+     * Same contract as {@link UserController#importUsers}. The import reads the body as a blocking stream,
+     * hashes and inserts over JPA, so it runs on the bounded elastic scheduler.
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    @PreAuthorize("hasRole('ADMIN')")
+    public Mono<UserImportReportDto> importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                 @RequestBody Flux<DataBuffer> body) {
+        UserImportService.Format format = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+                ? UserImportService.Format.NDJSON
+                : UserImportService.Format.CSV;
+        return Mono.fromCallable(() -> {
+                    try (InputStream input = DataBufferUtils.subscriberInputStream(body, IMPORT_DEMAND)) {
+                        return userImportService.importUsers(input, format);
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
@@ -1,22 +1,143 @@
 package ua.mctv32.kpi.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.Authentication;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import ua.mctv32.kpi.domain.User;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ua.mctv32.kpi.dto.UserBatchRequestDto;
+import ua.mctv32.kpi.dto.UserDto;
+import ua.mctv32.kpi.dto.UserImportReportDto;
+import ua.mctv32.kpi.dto.UserPageDto;
+import ua.mctv32.kpi.security.UserAuthentication;
+import ua.mctv32.kpi.service.UserImportService;
 import ua.mctv32.kpi.service.UserService;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
 @RestController
+@Profile("!reactive")
 @RequestMapping("/users")
 @RequiredArgsConstructor
 public class UserController {
 
     private final UserService userService;
+    private final UserImportService userImportService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("/me")
-    public User me(Authentication authentication) {
-        return userService.findByEmail(authentication.getName());
+    public UserDto me(UserAuthentication authentication) {
+        return userService.findById(authentication.getId());
+    }
+
+    /**
+     * Lists users in id order, a page at a time: {@code nextAfter} of the response is the {@code after}
+     * of the next page and {@code null} on the last one.
+     */
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public UserPageDto list(@RequestParam(required = false) Long after,
+                            @RequestParam(required = false) Integer limit) {
+        return userService.findPage(after, limit);
+    }
+
+    /**
+     * Streams every user as NDJSON, one {@link UserDto} per line. The response is written on the request
+     * thread rather than as a {@link StreamingResponseBody}, whose async request timeout would cut off
+     * the export of a large table.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    public void export(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        try (JsonGenerator generator = objectMapper.createGenerator(response.getOutputStream())) {
+            // lines end with a newline instead of values being separated by a space
+            generator.setRootValueSeparator(null);
+            userService.exportAll(user -> writeLine(generator, user));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Resolves up to {@code users.batch.max-size} ids at once. Users are written to the response as they
+     * are loaded, followed by the ids that were not found:
+     * {@code {"users": [...], "missing": [...]}}.
+     */
+    @PostMapping("/batch")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> batch(@RequestBody UserBatchRequestDto userBatchRequestDto) {
+        Set<Long> ids = new LinkedHashSet<>();
+        if (userBatchRequestDto.getIds() != null) {
+            userBatchRequestDto.getIds().stream().filter(Objects::nonNull).forEach(ids::add);
+        }
+        userService.checkBatchSize(ids);
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("users");
+                List<Long> missing = userService.findAllByIds(ids, user -> write(generator, user));
+                generator.writeEndArray();
+                generator.writeArrayFieldStart("missing");
+                for (Long id : missing) {
+                    generator.writeNumber(id);
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Imports users from an NDJSON ({@code {"email", "password", "roles"}} per line) or CSV
+     * ({@code email,password,roles} with roles separated by {@code |}) body, read as a stream.
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    @PreAuthorize("hasRole('ADMIN')")
+    public UserImportReportDto importUsers(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                           InputStream body) throws IOException {
+        UserImportService.Format format = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+                ? UserImportService.Format.NDJSON
+                : UserImportService.Format.CSV;
+        return userImportService.importUsers(body, format);
+    }
+
+    private static void write(JsonGenerator generator, UserDto user) {
+        try {
+            generator.writePOJO(user);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeLine(JsonGenerator generator, UserDto user) {
+        try {
+            generator.writePOJO(user);
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
@@ -0,0 +1,8 @@
+package ua.mctv32.kpi.domain;
+
+/**
+ * Row of the {@code audit_events} table. {@code userId} is unknown for failed logins and refreshes,
+ * {@code email} is the normalized login email and unset for refreshes.
+ */
+public record AuditEvent(AuditEventType type, Long userId, String email, long occurredAtMillis) {
+}
@@ -0,0 +1,5 @@
+package ua.mctv32.kpi.domain;
+
+public enum AuditEventType {
+    LOGIN_SUCCESS, LOGIN_FAILURE, TOKEN_REFRESH, TOKEN_REFRESH_FAILURE
+}
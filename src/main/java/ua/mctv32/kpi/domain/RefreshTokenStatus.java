@@ -0,0 +1,5 @@
+package ua.mctv32.kpi.domain;
+
+public enum RefreshTokenStatus {
+    ACTIVE, USED, REVOKED
+}
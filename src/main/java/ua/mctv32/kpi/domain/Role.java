@@ -1,5 +1,8 @@
 package ua.mctv32.kpi.domain;
 
+/**
+ * Ordinals are the bits of the role mask in compact tokens, add new roles at the end.
+ */
 public enum Role {
     ROLE_USER, ROLE_ADMIN
 }
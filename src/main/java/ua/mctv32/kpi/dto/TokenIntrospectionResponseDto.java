@@ -0,0 +1,16 @@
+package ua.mctv32.kpi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenIntrospectionResponseDto {
+    private List<TokenIntrospectionResultDto> results;
+}
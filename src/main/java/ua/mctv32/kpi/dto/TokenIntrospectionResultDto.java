@@ -0,0 +1,26 @@
+package ua.mctv32.kpi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ua.mctv32.kpi.domain.Role;
+import ua.mctv32.kpi.security.TokenStatus;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Inactive tokens only carry the {@code reason} they were rejected for.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenIntrospectionResultDto {
+    private boolean active;
+    private Long userId;
+    private Set<Role> roles;
+    private Instant expiresAt;
+    private TokenStatus reason;
+}
@@ -0,0 +1,23 @@
+package ua.mctv32.kpi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportReportDto {
+    private long imported;
+    private long failed;
+    private long durationMs;
+    private double usersPerSecond;
+    /**
+     * Errors of the first {@code users.import.max-reported-errors} failed rows.
+     */
+    private List<UserImportErrorDto> errors;
+}
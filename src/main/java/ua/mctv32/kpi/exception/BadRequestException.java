@@ -0,0 +1,7 @@
+package ua.mctv32.kpi.exception;
+
+public class BadRequestException extends RuntimeException {
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,145 @@
+package ua.mctv32.kpi.repository;
+
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ua.mctv32.kpi.domain.Role;
+import ua.mctv32.kpi.domain.User;
+import ua.mctv32.kpi.dto.UserDto;
+import ua.mctv32.kpi.security.RoleAuthorities;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * R2DBC counterpart of the {@link UserRepository} lookups used by the reactive profile. Users and their
+ * roles are read with one joined select, the same queries the JPA repository issues. Returned
+ * {@link User} instances are plain objects, writes keep going through {@link UserRepository}.
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveUserRepository {
+
+    private static final String SELECT_USER_ROLES = "select u.id, u.email, u.password, r.role from users u "
+            + "left join user_roles r on r.user_id = u.id ";
+    private static final String SELECT_ALL_DTOS = "select u.id, u.email, r.role from users u "
+            + "left join user_roles r on r.user_id = u.id order by u.id";
+
+    private final DatabaseClient databaseClient;
+    private final int exportFetchSize;
+
+    public ReactiveUserRepository(DatabaseClient databaseClient, @Value("${users.export.fetch-size}") int exportFetchSize) {
+        this.databaseClient = databaseClient;
+        this.exportFetchSize = exportFetchSize;
+    }
+
+    public Mono<User> findByEmail(String email) {
+        return databaseClient.sql(SELECT_USER_ROLES + "where u.email = :email")
+                .bind("email", email)
+                .map(ReactiveUserRepository::toRow)
+                .all()
+                .collectList()
+                .flatMap(rows -> Mono.justOrEmpty(toUsers(rows).stream().findFirst()));
+    }
+
+    public Mono<User> findById(Long id) {
+        return databaseClient.sql(SELECT_USER_ROLES + "where u.id = :id")
+                .bind("id", id)
+                .map(ReactiveUserRepository::toRow)
+                .all()
+                .collectList()
+                .flatMap(rows -> Mono.justOrEmpty(toUsers(rows).stream().findFirst()));
+    }
+
+    public Mono<UserDto> findDtoById(Long id) {
+        return findById(id).map(ReactiveUserRepository::toDto);
+    }
+
+    /**
+     * Callers are expected to keep the number of ids within the bind parameter limits of the driver.
+     */
+    public Flux<UserDto> findDtosByIds(Collection<Long> ids) {
+        return databaseClient.sql(SELECT_USER_ROLES + "where u.id in (:ids) order by u.id")
+                .bind("ids", ids)
+                .map(ReactiveUserRepository::toRow)
+                .all()
+                .collectList()
+                .flatMapIterable(ReactiveUserRepository::toUsers)
+                .map(ReactiveUserRepository::toDto);
+    }
+
+    /**
+     * Same keyset page as {@link UserRepository#findDtosAfter}.
+     */
+    public Flux<UserDto> findDtosAfter(long afterId, int limit) {
+        return databaseClient.sql("select id from users where id > :afterId order by id limit :limit")
+                .bind("afterId", afterId)
+                .bind("limit", limit)
+                .map(row -> row.get("id", Long.class))
+                .all()
+                .collectList()
+                .flatMapMany(ids -> ids.isEmpty() ? Flux.empty() : findDtosByIds(ids));
+    }
+
+    /**
+     * Every user in id order, fetched {@code users.export.fetch-size} rows at a time as the subscriber
+     * requests them. Same query as {@link UserExportRepository#streamAll}.
+     */
+    public Flux<UserDto> streamAll() {
+        return databaseClient.sql(SELECT_ALL_DTOS)
+                .filter(statement -> statement.fetchSize(exportFetchSize))
+                .map(row -> {
+                    String role = row.get("role", String.class);
+                    return new UserRoleRow(row.get("id", Long.class), row.get("email", String.class), null,
+                            role == null ? null : Role.valueOf(role));
+                })
+                .all()
+                .bufferUntilChanged(UserRoleRow::id)
+                .flatMapIterable(ReactiveUserRepository::toUsers)
+                .map(ReactiveUserRepository::toDto);
+    }
+
+    private static UserRoleRow toRow(Readable row) {
+        String role = row.get("role", String.class);
+        return new UserRoleRow(row.get("id", Long.class), row.get("email", String.class),
+                row.get("password", String.class), role == null ? null : Role.valueOf(role));
+    }
+
+    /**
+     * Folds consecutive rows of the same user into one {@link User}.
+     */
+    private static List<User> toUsers(List<UserRoleRow> rows) {
+        List<User> users = new ArrayList<>();
+        int i = 0;
+        while (i < rows.size()) {
+            UserRoleRow first = rows.get(i);
+            Set<Role> roles = EnumSet.noneOf(Role.class);
+            for (; i < rows.size() && rows.get(i).id().equals(first.id()); i++) {
+                if (rows.get(i).role() != null) {
+                    roles.add(rows.get(i).role());
+                }
+            }
+            users.add(User.builder()
+                    .id(first.id())
+                    .email(first.email())
+                    .password(first.password())
+                    .roles(roles)
+                    .build());
+        }
+        return users;
+    }
+
+    private static UserDto toDto(User user) {
+        return new UserDto(user.getId(), user.getEmail(), RoleAuthorities.roles(RoleAuthorities.toMask(user.getRoles())));
+    }
+
+    private record UserRoleRow(Long id, String email, String password, Role role) {
+    }
+}
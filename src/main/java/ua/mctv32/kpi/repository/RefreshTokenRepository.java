@@ -0,0 +1,43 @@
+package ua.mctv32.kpi.repository;
+
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import ua.mctv32.kpi.domain.RefreshToken;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID> {
+
+    @Modifying
+    @Query("""
+            update RefreshToken t set t.status = ua.mctv32.kpi.domain.RefreshTokenStatus.USED
+            where t.id = :id and t.status = ua.mctv32.kpi.domain.RefreshTokenStatus.ACTIVE
+            """)
+    int markUsed(@Param("id") UUID id);
+
+    @Modifying
+    @Query("""
+            update RefreshToken t set t.status = ua.mctv32.kpi.domain.RefreshTokenStatus.REVOKED
+            where t.familyId = :familyId and t.status <> ua.mctv32.kpi.domain.RefreshTokenStatus.REVOKED
+            """)
+    int revokeFamily(@Param("familyId") UUID familyId);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+            select t from RefreshToken t
+            where t.status = ua.mctv32.kpi.domain.RefreshTokenStatus.ACTIVE and t.expiresAt > :now
+            """)
+    Stream<RefreshToken> streamActive(@Param("now") Instant now);
+
+    @Modifying
+    @Query("delete from RefreshToken t where t.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+}
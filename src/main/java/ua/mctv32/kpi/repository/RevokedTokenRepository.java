@@ -0,0 +1,30 @@
+package ua.mctv32.kpi.repository;
+
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import ua.mctv32.kpi.domain.RevokedToken;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, UUID> {
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select t.id from RevokedToken t where t.expiresAt > :now")
+    Stream<UUID> streamIdsExpiringAfter(@Param("now") Instant now);
+
+    @Query("select t.id from RevokedToken t where t.revokedAt > :since")
+    List<UUID> findIdsRevokedAfter(@Param("since") Instant since);
+
+    @Modifying
+    @Query("delete from RevokedToken t where t.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+}
@@ -0,0 +1,89 @@
+package ua.mctv32.kpi.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ua.mctv32.kpi.domain.Role;
+import ua.mctv32.kpi.dto.UserDto;
+import ua.mctv32.kpi.security.RoleAuthorities;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * Reads every user through a forward-only JDBC cursor, {@code users.export.fetch-size} rows per round trip,
+ * and maps the rows straight to {@link UserDto} without Hibernate, so memory use does not grow with the
+ * table. Rows come ordered by id from the primary keys of both tables, which lets the roles of a user be
+ * folded in as they stream by.
+ */
+@Repository
+public class UserExportRepository {
+
+    private static final String SELECT_ALL = "select u.id, u.email, r.role from users u "
+            + "left join user_roles r on r.user_id = u.id order by u.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int fetchSize;
+
+    public UserExportRepository(JdbcTemplate jdbcTemplate, @Value("${users.export.fetch-size}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Passes every user to {@code consumer} in id order while the cursor is open. The PostgreSQL driver
+     * only fetches in chunks outside of auto-commit, hence the transaction.
+     */
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<UserDto> consumer) {
+        RoleRowFolder folder = new RoleRowFolder(consumer);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_ALL, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, folder);
+        folder.finish();
+    }
+
+    /**
+     * Folds consecutive rows of the same user into one {@link UserDto}, keeping only the user being read.
+     */
+    private static final class RoleRowFolder implements RowCallbackHandler {
+
+        private final Consumer<UserDto> consumer;
+        private long id;
+        private String email;
+        private int roles;
+
+        RoleRowFolder(Consumer<UserDto> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void processRow(ResultSet resultSet) throws SQLException {
+            long rowId = resultSet.getLong(1);
+            if (email == null || rowId != id) {
+                finish();
+                id = rowId;
+                email = resultSet.getString(2);
+            }
+            String role = resultSet.getString(3);
+            if (role != null) {
+                roles |= 1 << Role.valueOf(role).ordinal();
+            }
+        }
+
+        void finish() {
+            if (email != null) {
+                consumer.accept(new UserDto(id, email, RoleAuthorities.roles(roles)));
+                email = null;
+                roles = 0;
+            }
+        }
+    }
+}
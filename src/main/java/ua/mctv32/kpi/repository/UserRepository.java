@@ -1,11 +1,100 @@
 package ua.mctv32.kpi.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ua.mctv32.kpi.domain.Role;
 import ua.mctv32.kpi.domain.User;
+import ua.mctv32.kpi.dto.UserDto;
+import ua.mctv32.kpi.security.RoleAuthorities;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByEmail(String email);
+
+    @Query("select u.email from User u where u.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    /**
+     * Replaces the password hash unless it was changed since {@code previous} was read.
+     */
+    @Transactional
+    @Modifying
+    @Query("update User u set u.password = :encoded where u.id = :id and u.password = :previous")
+    int updatePassword(@Param("id") Long id, @Param("previous") String previous, @Param("encoded") String encoded);
+
+    /**
+     * Loads the read model of a user with a single joined select, without the password hash
+     * and without managing the entity.
+     */
+    default Optional<UserDto> findDtoById(Long id) {
+        return toDtos(findRoleRowsById(id)).stream().findFirst();
+    }
+
+    /**
+     * Loads the read models of the given users with a single joined select ordered by id.
+     * Callers are expected to keep the number of ids within the bind parameter limits of the driver.
+     */
+    default List<UserDto> findDtosByIds(Collection<Long> ids) {
+        return toDtos(findRoleRowsByIds(ids));
+    }
+
+    /**
+     * Up to {@code limit} users with an id greater than {@code afterId}, in id order. The page of ids is
+     * a range scan of the primary key that costs the same at any depth, unlike an offset; the roles are
+     * joined in a second select since a limit on the joined rows would cut users with several roles short.
+     */
+    default List<UserDto> findDtosAfter(long afterId, int limit) {
+        List<Long> ids = findIdsAfter(afterId, Limit.of(limit));
+        return ids.isEmpty() ? List.of() : findDtosByIds(ids);
+    }
+
+    @Query("select u.id from User u where u.id > :afterId order by u.id")
+    List<Long> findIdsAfter(@Param("afterId") long afterId, Limit limit);
+
+    @Query("select u.id as id, u.email as email, r as role from User u left join u.roles r where u.id = :id")
+    List<UserRoleRow> findRoleRowsById(@Param("id") Long id);
+
+    @Query("select u.id as id, u.email as email, r as role from User u left join u.roles r "
+            + "where u.id in :ids order by u.id")
+    List<UserRoleRow> findRoleRowsByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Folds consecutive rows of the same user into one {@link UserDto}.
+     */
+    private static List<UserDto> toDtos(List<UserRoleRow> rows) {
+        List<UserDto> users = new ArrayList<>();
+        int i = 0;
+        while (i < rows.size()) {
+            UserRoleRow first = rows.get(i);
+            int roles = 0;
+            for (; i < rows.size() && rows.get(i).getId().equals(first.getId()); i++) {
+                Role role = rows.get(i).getRole();
+                if (role != null) {
+                    roles |= 1 << role.ordinal();
+                }
+            }
+            users.add(new UserDto(first.getId(), first.getEmail(), RoleAuthorities.roles(roles)));
+        }
+        return users;
+    }
+
+    /**
+     * One row per role of a user, users without roles produce a single row with a {@code null} role.
+     */
+    interface UserRoleRow {
+        Long getId();
+
+        String getEmail();
+
+        Role getRole();
+    }
 }
@@ -0,0 +1,112 @@
+package ua.mctv32.kpi.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * BCrypt encoder with a cost that is either configured or calibrated at startup so that a single hash
+ * takes at most the target time on the current hardware. Unlike {@link BCryptPasswordEncoder}, hashes
+ * with any other cost, higher or lower, are reported by {@link #upgradeEncoding(String)}.
+ * <p>
+ * Instances calibrating to different costs would rehash the password of a user on every login that
+ * lands on another instance, so the cost is rounded down, which keeps typical hash times away from a
+ * step, and {@link #isNearStrengthStep()} tells when the measurement was too close to one to rely on.
+ * Deployments with several instances should configure the cost instead.
+ */
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final String SAMPLE_PASSWORD = "calibration-password";
+    private static final int SAMPLES = 3;
+    // a measurement within 10% of the next or previous cost step may come out on the other side of it
+    private static final double STEP_MARGIN = Math.log(1.1) / Math.log(2);
+
+    private final int strength;
+    private final Duration hashTime;
+    private final boolean nearStrengthStep;
+
+    private CalibratedBCryptPasswordEncoder(int strength, Duration hashTime, boolean nearStrengthStep) {
+        super(strength);
+        this.strength = strength;
+        this.hashTime = hashTime;
+        this.nearStrengthStep = nearStrengthStep;
+    }
+
+    public static CalibratedBCryptPasswordEncoder withStrength(int strength) {
+        return new CalibratedBCryptPasswordEncoder(strength, measure(strength, 1), false);
+    }
+
+    /**
+     * Measures a hash at {@code minStrength} and picks the highest cost whose hash takes at most
+     * {@code target}, every extra cost step doubles the hash time.
+     */
+    public static CalibratedBCryptPasswordEncoder calibrate(Duration target, int minStrength, int maxStrength) {
+        Duration base = measure(minStrength, SAMPLES);
+        double steps = steps(base, target);
+        int strength = strength(steps, minStrength, maxStrength);
+        Duration hashTime = strength == minStrength ? base : measure(strength, 1);
+        return new CalibratedBCryptPasswordEncoder(strength, hashTime, isNearStep(steps, minStrength, maxStrength));
+    }
+
+    /**
+     * Cost steps between {@code base} and {@code target}, the log2 of their ratio.
+     */
+    static double steps(Duration base, Duration target) {
+        return Math.log((double) target.toNanos() / Math.max(1, base.toNanos())) / Math.log(2);
+    }
+
+    static int strength(double steps, int minStrength, int maxStrength) {
+        return Math.clamp(minStrength + (long) Math.floor(steps), minStrength, maxStrength);
+    }
+
+    /**
+     * Whether a measurement off by {@link #STEP_MARGIN} could have picked another cost.
+     */
+    static boolean isNearStep(double steps, int minStrength, int maxStrength) {
+        int strength = strength(steps, minStrength, maxStrength);
+        return strength(steps - STEP_MARGIN, minStrength, maxStrength) != strength
+                || strength(steps + STEP_MARGIN, minStrength, maxStrength) != strength;
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    public Duration getHashTime() {
+        return hashTime;
+    }
+
+    public boolean isNearStrengthStep() {
+        return nearStrengthStep;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        // $2a$10$...
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(6) != '$') {
+            return super.upgradeEncoding(encodedPassword);
+        }
+        try {
+            return Integer.parseInt(encodedPassword, 4, 6, 10) != strength;
+        } catch (NumberFormatException e) {
+            return super.upgradeEncoding(encodedPassword);
+        }
+    }
+
+    /**
+     * Median of {@code samples} hashes after one warm-up hash.
+     */
+    private static Duration measure(int strength, int samples) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        encoder.encode(SAMPLE_PASSWORD);
+        long[] times = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return Duration.ofNanos(times[samples / 2]);
+    }
+}
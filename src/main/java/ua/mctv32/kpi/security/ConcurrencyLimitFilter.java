@@ -0,0 +1,141 @@
+package ua.mctv32.kpi.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ua.mctv32.kpi.dto.ExceptionDto;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admits requests through the {@link ConcurrencyLimiter} and answers the rest with a 503 before any further
+ * work is done. Runs after the JWT filter: authenticated reads are {@code HIGH}, {@code /auth/login}, whose
+ * password check is the most expensive request, is {@code LOW} and everything else {@code NORMAL}. The
+ * management endpoints are not limited, a shed health check would get the instance restarted.
+ * <p>
+ * Async requests, such as logins, hold their permit until the async request completes.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final String LOGIN_PATH = "/auth/login";
+    private static final String MANAGEMENT_PATH = "/actuator/";
+
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final long retryAfterSeconds;
+    private final byte[] rejectionBody;
+
+    public ConcurrencyLimitFilter(ConcurrencyLimiter concurrencyLimiter, long retryAfterSeconds,
+                                  ObjectMapper objectMapper) throws IOException {
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.rejectionBody = objectMapper.writeValueAsBytes(new ExceptionDto("Server is overloaded"));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !concurrencyLimiter.isEnabled() || path(request).startsWith(MANAGEMENT_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ConcurrencyLimiter.Priority priority = priority(request);
+        if (!concurrencyLimiter.tryAcquire(priority)) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setContentLength(rejectionBody.length);
+            response.getOutputStream().write(rejectionBody);
+            return;
+        }
+
+        Permit permit = new Permit(priority, response);
+        try {
+            filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            permit.release(false);
+            throw e;
+        }
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(permit);
+        } else {
+            permit.release(permit.succeeded());
+        }
+    }
+
+    private static ConcurrencyLimiter.Priority priority(HttpServletRequest request) {
+        String path = path(request);
+        if (LOGIN_PATH.equals(path)) {
+            return ConcurrencyLimiter.Priority.LOW;
+        }
+        boolean read = HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+        if (read && SecurityContextHolder.getContext().getAuthentication() instanceof UserAuthentication) {
+            return ConcurrencyLimiter.Priority.HIGH;
+        }
+        return ConcurrencyLimiter.Priority.NORMAL;
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    /**
+     * Released exactly once, on the thread that finished the request.
+     */
+    private final class Permit implements AsyncListener {
+
+        private final ConcurrencyLimiter.Priority priority;
+        private final HttpServletResponse response;
+        private final long startedAt = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(ConcurrencyLimiter.Priority priority, HttpServletResponse response) {
+            this.priority = priority;
+            this.response = response;
+        }
+
+        /**
+         * Failed requests count towards the limit but not the latency: they are usually fast, and
+         * would make an overloaded server look healthy. Timeouts do count, they are what overload looks like.
+         */
+        void release(boolean measured) {
+            if (released.compareAndSet(false, true)) {
+                concurrencyLimiter.release(priority, measured ? System.nanoTime() - startedAt : -1);
+            }
+        }
+
+        boolean succeeded() {
+            return response.getStatus() < HttpStatus.INTERNAL_SERVER_ERROR.value();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release(succeeded());
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release(true);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release(false);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package ua.mctv32.kpi.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps the requests in flight at a limit that follows the measured latency, in the manner of a gradient
+ * limiter: every window compares the average latency of the window with a slow moving average of earlier
+ * windows. Latency above {@code rtt-tolerance} times the long-term average shrinks the limit in proportion,
+ * latency at or below it lets the limit grow by its square root, the queue a healthy server can absorb.
+ * The limit only grows while more than half of it is in use.
+ * <p>
+ * Latency is sampled from {@code HIGH} and {@code NORMAL} requests only: {@code LOW} ones are the logins,
+ * slow by design because of the password hash, and a burst of them would read as overload and shed reads
+ * of a healthy server. They still count towards the requests in flight.
+ * <p>
+ * Each {@link Priority} may fill its share of the limit only, so as requests pile up the lower classes
+ * are rejected first while the higher ones still get in.
+ */
+@Component
+@Profile("!reactive")
+public class ConcurrencyLimiter {
+
+    public enum Priority {
+        HIGH, NORMAL, LOW
+    }
+
+    // weight of a window in the long-term latency average, about the last 100 windows
+    private static final double LONG_RTT_SMOOTHING = 0.02;
+    // with the long-term average this far above the window, latency is recovering from overload
+    private static final double LONG_RTT_RECOVERY_RATIO = 2;
+    private static final double LONG_RTT_RECOVERY_DECAY = 0.95;
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance;
+    private final double smoothing;
+    private final long windowNanos;
+    private final int minWindowSamples;
+    private final Map<Priority, Double> shares = new EnumMap<>(Priority.class);
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger windowMaxInFlight = new AtomicInteger();
+    private final LongAdder windowRttNanos = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicLong windowStartedAt = new AtomicLong(System.nanoTime());
+    private volatile double limit;
+    private double longRttNanos;
+
+    private final Map<Priority, Counter> acceptedCounters = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> shedCounters = new EnumMap<>(Priority.class);
+
+    public ConcurrencyLimiter(@Value("${security.concurrency-limit.enabled}") boolean enabled,
+                              @Value("${security.concurrency-limit.initial-limit}") int initialLimit,
+                              @Value("${security.concurrency-limit.min-limit}") int minLimit,
+                              @Value("${security.concurrency-limit.max-limit}") int maxLimit,
+                              @Value("${security.concurrency-limit.rtt-tolerance}") double rttTolerance,
+                              @Value("${security.concurrency-limit.smoothing}") double smoothing,
+                              @Value("${security.concurrency-limit.window-ms}") long windowMs,
+                              @Value("${security.concurrency-limit.min-window-samples}") int minWindowSamples,
+                              @Value("${security.concurrency-limit.normal-share}") double normalShare,
+                              @Value("${security.concurrency-limit.low-share}") double lowShare,
+                              MeterRegistry meterRegistry) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min-limit <= initial-limit <= max-limit");
+        }
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.rttTolerance = rttTolerance;
+        this.smoothing = smoothing;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.minWindowSamples = minWindowSamples;
+        this.limit = initialLimit;
+        shares.put(Priority.HIGH, 1.0);
+        shares.put(Priority.NORMAL, normalShare);
+        shares.put(Priority.LOW, lowShare);
+
+        for (Priority priority : Priority.values()) {
+            String tag = priority.name().toLowerCase();
+            acceptedCounters.put(priority, Counter.builder("concurrency.limit.requests")
+                    .tag("priority", tag)
+                    .tag("result", "accepted")
+                    .description("Requests checked against the concurrency limit")
+                    .register(meterRegistry));
+            shedCounters.put(priority, Counter.builder("concurrency.limit.requests")
+                    .tag("priority", tag)
+                    .tag("result", "shed")
+                    .description("Requests checked against the concurrency limit")
+                    .register(meterRegistry));
+        }
+        Gauge.builder("concurrency.limit", this, it -> it.limit)
+                .description("Requests allowed in flight at once")
+                .register(meterRegistry);
+        Gauge.builder("concurrency.limit.in.flight", inFlight, AtomicInteger::get)
+                .description("Requests in flight")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return {@code false} if the share of the limit of {@code priority} is used up; otherwise the caller
+     * must call {@link #release} once the request completes
+     */
+    public boolean tryAcquire(Priority priority) {
+        int allowed = Math.max(1, (int) (limit * shares.get(priority)));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                shedCounters.get(priority).increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                windowMaxInFlight.accumulateAndGet(current + 1, Math::max);
+                acceptedCounters.get(priority).increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param priority the priority the permit was acquired with
+     * @param rttNanos time the request took, or a negative value to leave it out of the latency,
+     *                 e.g. for a request that failed fast
+     */
+    public void release(Priority priority, long rttNanos) {
+        inFlight.decrementAndGet();
+        if (rttNanos < 0 || priority == Priority.LOW) {
+            return;
+        }
+        windowRttNanos.add(rttNanos);
+        windowSamples.increment();
+
+        long now = System.nanoTime();
+        long startedAt = windowStartedAt.get();
+        if (now - startedAt >= windowNanos && windowSamples.sum() >= minWindowSamples
+                && windowStartedAt.compareAndSet(startedAt, now)) {
+            update();
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Runs on the thread that closed the window, samples of requests completing meanwhile go to either window.
+     */
+    private synchronized void update() {
+        long samples = windowSamples.sumThenReset();
+        double shortRttNanos = (double) windowRttNanos.sumThenReset() / Math.max(1, samples);
+        int maxInFlight = windowMaxInFlight.getAndSet(inFlight.get());
+        if (samples == 0 || shortRttNanos <= 0) {
+            return;
+        }
+
+        if (longRttNanos == 0) {
+            longRttNanos = shortRttNanos;
+        } else {
+            longRttNanos += (shortRttNanos - longRttNanos) * LONG_RTT_SMOOTHING;
+            // return to the new normal without waiting for the average to catch up
+            if (longRttNanos / shortRttNanos > LONG_RTT_RECOVERY_RATIO) {
+                longRttNanos *= LONG_RTT_RECOVERY_DECAY;
+            }
+        }
+
+        double current = limit;
+        if (maxInFlight < current / 2) {
+            return;
+        }
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, rttTolerance * longRttNanos / shortRttNanos));
+        double target = current * gradient + Math.sqrt(current);
+        double next = current * (1 - smoothing) + target * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+}
@@ -4,33 +4,46 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.annotation.Profile;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import ua.mctv32.kpi.service.JwtService;
 
 import java.io.IOException;
-import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Component
-@RequiredArgsConstructor
+@Profile("!reactive")
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     public static final String AUTH_HEADER = "Authorization";
     public static final String BEARER_PREFIX = "Bearer ";
 
     private final JwtService jwtService;
+    private final Timer filterTimer;
+
+    public JwtAuthenticationFilter(JwtService jwtService, MeterRegistry meterRegistry) {
+        this.jwtService = jwtService;
+        this.filterTimer = Timer.builder("security.jwt.filter")
+                .description("Time the JWT filter spends on a request, excluding the rest of the chain")
+                .register(meterRegistry);
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
-        Optional.ofNullable(request.getHeader(AUTH_HEADER))
-                .map(header -> header.substring(BEARER_PREFIX.length()))
-                .flatMap(jwtService::toAuthentication)
-                .ifPresent(userAuthentication -> {
-                    SecurityContextHolder.getContext().setAuthentication(userAuthentication);
-                });
+        long startedAt = System.nanoTime();
+        String header = request.getHeader(AUTH_HEADER);
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            TokenVerification verification = jwtService.verify(header.substring(BEARER_PREFIX.length()));
+            if (verification.isValid()) {
+                SecurityContextHolder.getContext().setAuthentication(verification.authentication());
+            }
+        }
+        filterTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
 
         filterChain.doFilter(request, response);
     }
@@ -0,0 +1,253 @@
+package ua.mctv32.kpi.security;
+
+import io.jsonwebtoken.security.Jwks;
+import ua.mctv32.kpi.util.StripedPool;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * A token signing key together with the exact base64url JWS headers of the tokens it signs, so that
+ * the key and the claim format of a token are found by comparing header prefixes without decoding them.
+ * Verification state is pooled per key.
+ */
+public final class JwtKey {
+
+    public static final String ES256 = "ES256";
+    public static final String EDDSA = "EdDSA";
+
+    /**
+     * Header parameter carrying the claim format version, tokens without it are {@link #LEGACY_FORMAT}.
+     */
+    public static final String FORMAT_HEADER = "ver";
+    public static final int LEGACY_FORMAT = 1;
+    public static final int COMPACT_FORMAT = 2;
+
+    private static final Base64.Encoder BASE64_URL_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder BASE64_URL_DECODER = Base64.getUrlDecoder();
+
+    private final String kid;
+    private final String algorithm;
+    private final String legacyHeader;
+    private final String compactHeader;
+    private final Key signingKey;
+    private final PublicKey publicKey;
+    private final StripedPool<Verifier> verifiers;
+
+    private JwtKey(String kid, String algorithm, Key signingKey, PublicKey publicKey, StripedPool<Verifier> verifiers) {
+        this.kid = kid;
+        this.algorithm = algorithm;
+        this.legacyHeader = encodeHeader(kid, null, algorithm);
+        this.compactHeader = encodeHeader(kid, COMPACT_FORMAT, algorithm);
+        this.signingKey = signingKey;
+        this.publicKey = publicKey;
+        this.verifiers = verifiers;
+    }
+
+    /**
+     * Shared secret key, signed tokens carry no {@code kid}.
+     */
+    public static JwtKey hmac(SecretKey secretKey) {
+        String algorithm = "HS" + secretKey.getAlgorithm().substring("HmacSHA".length());
+        return new JwtKey(null, algorithm, secretKey, null, new StripedPool<>(() -> new HmacVerifier(secretKey)));
+    }
+
+    /**
+     * @param privateKey {@code null} for keys that only verify tokens signed before a rotation
+     */
+    public static JwtKey asymmetric(String kid, String algorithm, PrivateKey privateKey, PublicKey publicKey) {
+        String jcaAlgorithm = switch (algorithm) {
+            case ES256 -> {
+                if (!(publicKey instanceof ECPublicKey ecKey) || ecKey.getParams().getCurve().getField().getFieldSize() != 256) {
+                    throw new IllegalArgumentException("Key " + kid + " is not a P-256 key");
+                }
+                yield "SHA256withECDSAinP1363Format";
+            }
+            case EDDSA -> "Ed25519";
+            default -> throw new IllegalArgumentException("Unsupported algorithm " + algorithm + " of key " + kid);
+        };
+        if (privateKey != null) {
+            checkPair(kid, jcaAlgorithm, privateKey, publicKey);
+        }
+        return new JwtKey(kid, algorithm, privateKey, publicKey,
+                new StripedPool<>(() -> new SignatureVerifier(jcaAlgorithm, publicKey)));
+    }
+
+    public String getKid() {
+        return kid;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public Key getSigningKey() {
+        return signingKey;
+    }
+
+    public boolean canSign() {
+        return signingKey != null;
+    }
+
+    /**
+     * Claim format of the token whose header ends at {@code headerEnd}, {@code 0} if it does not have
+     * a header of this key.
+     */
+    public int formatOf(String token, int headerEnd) {
+        if (headerEnd == compactHeader.length() && token.startsWith(compactHeader)) {
+            return COMPACT_FORMAT;
+        }
+        if (headerEnd == legacyHeader.length() && token.startsWith(legacyHeader)) {
+            return LEGACY_FORMAT;
+        }
+        return 0;
+    }
+
+    /**
+     * Verifies the base64url signature that follows the signing input {@code token[0, signingInputEnd)}.
+     */
+    public boolean verify(byte[] token, int signingInputEnd) {
+        Verifier verifier = verifiers.acquire();
+        try {
+            return verifier.verify(token, signingInputEnd);
+        } finally {
+            verifiers.release(verifier);
+        }
+    }
+
+    /**
+     * Public JWK of this key, {@code null} for the shared secret.
+     */
+    public Map<String, ?> toJwk() {
+        if (publicKey == null) {
+            return null;
+        }
+        return Jwks.builder().key(publicKey).id(kid).algorithm(algorithm).publicKeyUse("sig").build();
+    }
+
+    /**
+     * The header in the field order JJWT writes it: parameters in the order they were set, {@code alg} last.
+     */
+    private static String encodeHeader(String kid, Integer format, String algorithm) {
+        StringBuilder json = new StringBuilder("{");
+        if (kid != null) {
+            json.append("\"kid\":\"").append(kid).append("\",");
+        }
+        if (format != null) {
+            json.append('"').append(FORMAT_HEADER).append("\":").append(format).append(',');
+        }
+        json.append("\"alg\":\"").append(algorithm).append("\"}");
+        return BASE64_URL_ENCODER.encodeToString(json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void checkPair(String kid, String jcaAlgorithm, PrivateKey privateKey, PublicKey publicKey) {
+        byte[] probe = kid.getBytes(StandardCharsets.UTF_8);
+        try {
+            Signature signer = Signature.getInstance(jcaAlgorithm);
+            signer.initSign(privateKey);
+            signer.update(probe);
+            byte[] signature = signer.sign();
+
+            Signature verifier = Signature.getInstance(jcaAlgorithm);
+            verifier.initVerify(publicKey);
+            verifier.update(probe);
+            if (!verifier.verify(signature)) {
+                throw new IllegalArgumentException("Private and public key of " + kid + " do not match");
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException("Unable to use key " + kid, e);
+        }
+    }
+
+    private interface Verifier {
+        boolean verify(byte[] token, int signingInputEnd);
+    }
+
+    /**
+     * MAC with preallocated buffers; the signature is compared in its base64url form
+     * so that the token never has to be decoded for the check.
+     */
+    private static final class HmacVerifier implements Verifier {
+
+        private final Mac mac;
+        private final byte[] digest;
+        private final byte[] signature;
+
+        private HmacVerifier(SecretKey key) {
+            try {
+                this.mac = Mac.getInstance(key.getAlgorithm());
+                this.mac.init(key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to initialize " + key.getAlgorithm(), e);
+            }
+            this.digest = new byte[mac.getMacLength()];
+            this.signature = new byte[(digest.length * 4 + 2) / 3];
+        }
+
+        @Override
+        public boolean verify(byte[] token, int signingInputEnd) {
+            if (token.length - signingInputEnd - 1 != signature.length) {
+                return false;
+            }
+            try {
+                mac.update(token, 0, signingInputEnd);
+                mac.doFinal(digest, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+            BASE64_URL_ENCODER.encode(digest, signature);
+
+            int diff = 0;
+            for (int i = 0; i < signature.length; i++) {
+                diff |= signature[i] ^ token[signingInputEnd + 1 + i];
+            }
+            return diff == 0;
+        }
+    }
+
+    /**
+     * ES256 and EdDSA signatures are both 64 raw bytes in JWS, which the P1363 ECDSA and the Ed25519
+     * JCA signatures accept as they are.
+     */
+    private static final class SignatureVerifier implements Verifier {
+
+        private static final int SIGNATURE_LENGTH = 64;
+        private static final int ENCODED_SIGNATURE_LENGTH = (SIGNATURE_LENGTH * 4 + 2) / 3;
+
+        private final Signature signature;
+
+        private SignatureVerifier(String jcaAlgorithm, PublicKey publicKey) {
+            try {
+                this.signature = Signature.getInstance(jcaAlgorithm);
+                this.signature.initVerify(publicKey);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to initialize " + jcaAlgorithm, e);
+            }
+        }
+
+        @Override
+        public boolean verify(byte[] token, int signingInputEnd) {
+            if (token.length - signingInputEnd - 1 != ENCODED_SIGNATURE_LENGTH) {
+                return false;
+            }
+            try {
+                ByteBuffer decoded = BASE64_URL_DECODER.decode(
+                        ByteBuffer.wrap(token, signingInputEnd + 1, ENCODED_SIGNATURE_LENGTH));
+                signature.update(token, 0, signingInputEnd);
+                return signature.verify(decoded.array(), 0, decoded.limit());
+            } catch (IllegalArgumentException | GeneralSecurityException e) {
+                return false;
+            }
+        }
+    }
+}
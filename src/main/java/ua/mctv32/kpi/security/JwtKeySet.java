@@ -0,0 +1,117 @@
+package ua.mctv32.kpi.security;
+
+import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The keys tokens are signed and verified with. The HMAC {@code jwt.secret} is always accepted, so
+ * tokens issued before switching to asymmetric signing stay valid, and is never published.
+ */
+@Component
+public class JwtKeySet {
+
+    private final JwtKey signingKey;
+    private final List<JwtKey> keys;
+    private final List<Map<String, ?>> jwks;
+    private final long jwksMaxAgeSeconds;
+
+    public JwtKeySet(@Value("${jwt.secret}") String secret, JwtSigningProperties properties) {
+        List<JwtKey> keys = new ArrayList<>();
+        Set<String> kids = new HashSet<>();
+        JwtKey signingKey = null;
+        for (JwtSigningProperties.Key key : properties.keys()) {
+            if (key.kid() == null || key.kid().isBlank() || !kids.add(key.kid())) {
+                throw new IllegalArgumentException("Signing keys need a unique kid, got " + key.kid());
+            }
+            JwtKey jwtKey = toJwtKey(key);
+            keys.add(jwtKey);
+            if (key.kid().equals(properties.activeKid())) {
+                signingKey = jwtKey;
+            }
+        }
+
+        JwtKey hmacKey = JwtKey.hmac(Keys.hmacShaKeyFor(secret.getBytes()));
+        keys.add(hmacKey);
+        if (properties.activeKid() == null || properties.activeKid().isBlank()) {
+            signingKey = hmacKey;
+        } else if (signingKey == null || !signingKey.canSign()) {
+            throw new IllegalArgumentException("Active signing key " + properties.activeKid() + " has no private key");
+        }
+
+        this.signingKey = signingKey;
+        this.keys = List.copyOf(keys);
+        this.jwks = keys.stream().map(JwtKey::toJwk).filter(Objects::nonNull).toList();
+        this.jwksMaxAgeSeconds = properties.jwksMaxAgeSeconds();
+    }
+
+    public JwtKey signingKey() {
+        return signingKey;
+    }
+
+    /**
+     * Key of the token whose header ends at {@code headerEnd}, {@code null} for an unknown header.
+     */
+    public JwtKey find(String token, int headerEnd) {
+        for (JwtKey key : keys) {
+            if (key.formatOf(token, headerEnd) != 0) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Public keys in JWK form, for verifiers outside of this service.
+     */
+    public List<Map<String, ?>> jwks() {
+        return jwks;
+    }
+
+    public long jwksMaxAgeSeconds() {
+        return jwksMaxAgeSeconds;
+    }
+
+    private static JwtKey toJwtKey(JwtSigningProperties.Key key) {
+        String keyAlgorithm = switch (String.valueOf(key.algorithm())) {
+            case JwtKey.ES256 -> "EC";
+            case JwtKey.EDDSA -> "Ed25519";
+            default -> throw new IllegalArgumentException("Unsupported algorithm " + key.algorithm() + " of key " + key.kid());
+        };
+        if (key.publicKey() == null || key.publicKey().isBlank()) {
+            throw new IllegalArgumentException("Key " + key.kid() + " has no public key");
+        }
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance(keyAlgorithm);
+            PublicKey publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(decode(key.publicKey())));
+            PrivateKey privateKey = key.privateKey() == null || key.privateKey().isBlank()
+                    ? null
+                    : keyFactory.generatePrivate(new PKCS8EncodedKeySpec(decode(key.privateKey())));
+            return JwtKey.asymmetric(key.kid(), key.algorithm(), privateKey, publicKey);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unable to read key " + key.kid(), e);
+        }
+    }
+
+    /**
+     * PEM or bare base64 DER.
+     */
+    private static byte[] decode(String key) {
+        String base64 = key.replaceAll("-----[A-Z ]+-----", "").replaceAll("\\s", "");
+        return Base64.getDecoder().decode(base64);
+    }
+}
@@ -0,0 +1,26 @@
+package ua.mctv32.kpi.security;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+/**
+ * Asymmetric token signing keys. Tokens are signed with the key named by {@code activeKid}, or with the
+ * HMAC {@code jwt.secret} when it is empty. Every listed key stays valid for verification, so a rotated
+ * key remains listed, optionally without its private key, until the tokens signed with it have expired.
+ */
+@ConfigurationProperties("jwt.signing")
+public record JwtSigningProperties(String activeKid, long jwksMaxAgeSeconds, List<Key> keys) {
+
+    public JwtSigningProperties {
+        keys = keys == null ? List.of() : List.copyOf(keys);
+    }
+
+    /**
+     * A key in PEM or base64 DER form: PKCS#8 for the private key, X.509 for the public key.
+     *
+     * @param algorithm {@code ES256} (P-256) or {@code EdDSA} (Ed25519)
+     */
+    public record Key(String kid, String algorithm, String privateKey, String publicKey) {
+    }
+}
@@ -0,0 +1,54 @@
+package ua.mctv32.kpi.security;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import ua.mctv32.kpi.service.JwtService;
+
+import java.util.concurrent.TimeUnit;
+
+import static ua.mctv32.kpi.security.JwtAuthenticationFilter.AUTH_HEADER;
+import static ua.mctv32.kpi.security.JwtAuthenticationFilter.BEARER_PREFIX;
+
+/**
+ * {@link JwtAuthenticationFilter} for the reactive profile. Verification runs on the event loop,
+ * only the database check of a token id matched by the revocation Bloom filter is offloaded.
+ * <p>
+ * Not a bean on purpose: WebFlux would add every {@link WebFilter} bean to the chain a second time.
+ */
+public class JwtWebFilter implements WebFilter {
+
+    private final JwtService jwtService;
+    private final Timer filterTimer;
+
+    public JwtWebFilter(JwtService jwtService, MeterRegistry meterRegistry) {
+        this.jwtService = jwtService;
+        this.filterTimer = Timer.builder("security.jwt.filter")
+                .description("Time the JWT filter spends on a request, excluding the rest of the chain")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        long startedAt = System.nanoTime();
+        String header = exchange.getRequest().getHeaders().getFirst(AUTH_HEADER);
+        if (header == null || !header.startsWith(BEARER_PREFIX)) {
+            filterTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            return chain.filter(exchange);
+        }
+        return jwtService.verifyAsync(header.substring(BEARER_PREFIX.length()), Schedulers.boundedElastic())
+                .flatMap(verification -> {
+                    filterTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                    if (!verification.isValid()) {
+                        return chain.filter(exchange);
+                    }
+                    return chain.filter(exchange)
+                            .contextWrite(ReactiveSecurityContextHolder.withAuthentication(verification.authentication()));
+                });
+    }
+}
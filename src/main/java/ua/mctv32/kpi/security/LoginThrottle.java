@@ -0,0 +1,132 @@
+package ua.mctv32.kpi.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ua.mctv32.kpi.exception.TooManyRequestsException;
+import ua.mctv32.kpi.util.Emails;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets for login attempts per client address and per email, checked before any database
+ * or hashing work is done.
+ * <p>
+ * Every bucket is a single {@link AtomicLong} holding the theoretical arrival time of the next attempt
+ * (GCRA): taking a token is one CAS, a rejected attempt does not write at all. Buckets live in
+ * size-bounded maps and are evicted after being idle; a bucket is never evicted before it would
+ * have refilled completely, so eviction cannot hand out extra attempts.
+ */
+@Component
+public class LoginThrottle {
+
+    private final boolean enabled;
+    private final Clock clock;
+    private final Buckets ipBuckets;
+    private final Buckets emailBuckets;
+
+    public LoginThrottle(@Value("${security.login-throttle.enabled}") boolean enabled,
+                         @Value("${security.login-throttle.ip.capacity}") int ipCapacity,
+                         @Value("${security.login-throttle.ip.refill-period-ms}") long ipRefillPeriodMs,
+                         @Value("${security.login-throttle.email.capacity}") int emailCapacity,
+                         @Value("${security.login-throttle.email.refill-period-ms}") long emailRefillPeriodMs,
+                         @Value("${security.login-throttle.max-keys}") long maxKeys,
+                         @Value("${security.login-throttle.idle-eviction-ms}") long idleEvictionMs,
+                         Clock clock, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.clock = clock;
+        this.ipBuckets = new Buckets("ip", ipCapacity, ipRefillPeriodMs, maxKeys, idleEvictionMs, meterRegistry);
+        this.emailBuckets = new Buckets("email", emailCapacity, emailRefillPeriodMs, maxKeys, idleEvictionMs, meterRegistry);
+    }
+
+    /**
+     * Takes a token from the buckets of the client address and of the email.
+     *
+     * @throws TooManyRequestsException if either bucket is empty
+     */
+    public void acquire(String email, String clientAddress) {
+        if (!enabled) {
+            return;
+        }
+        long now = clock.instant().toEpochMilli();
+        long waitMs = ipBuckets.tryAcquire(clientAddress == null ? "" : clientAddress, now);
+        if (waitMs == 0) {
+            waitMs = emailBuckets.tryAcquire(email == null ? "" : Emails.normalize(email), now);
+        }
+        if (waitMs > 0) {
+            throw new TooManyRequestsException("Too many login attempts", Math.ceilDiv(waitMs, 1000));
+        }
+    }
+
+    private static final class Buckets {
+
+        private final long capacity;
+        private final long refillPeriodMs;
+        private final Cache<String, AtomicLong> buckets;
+
+        private final Counter allowedCounter;
+        private final Counter throttledCounter;
+
+        private Buckets(String scope, long capacity, long refillPeriodMs, long maxKeys, long idleEvictionMs,
+                        MeterRegistry meterRegistry) {
+            this.capacity = capacity;
+            this.refillPeriodMs = refillPeriodMs;
+
+            Counter evictedCounter = Counter.builder("login.throttle.evicted")
+                    .tag("scope", scope)
+                    .description("Login throttle buckets evicted because they were idle or the map was full")
+                    .register(meterRegistry);
+            this.buckets = Caffeine.newBuilder()
+                    .maximumSize(maxKeys)
+                    .expireAfterAccess(Duration.ofMillis(Math.max(idleEvictionMs, capacity * refillPeriodMs)))
+                    .removalListener((String key, AtomicLong bucket, RemovalCause cause) -> {
+                        if (cause.wasEvicted()) {
+                            evictedCounter.increment();
+                        }
+                    })
+                    .build();
+
+            this.allowedCounter = Counter.builder("login.throttle.requests")
+                    .tag("scope", scope)
+                    .tag("result", "allowed")
+                    .description("Login attempts checked against the throttle")
+                    .register(meterRegistry);
+            this.throttledCounter = Counter.builder("login.throttle.requests")
+                    .tag("scope", scope)
+                    .tag("result", "throttled")
+                    .description("Login attempts checked against the throttle")
+                    .register(meterRegistry);
+            Gauge.builder("login.throttle.buckets", buckets, Cache::estimatedSize)
+                    .tag("scope", scope)
+                    .description("Login throttle buckets held in memory")
+                    .register(meterRegistry);
+        }
+
+        /**
+         * Returns {@code 0} if a token was taken, otherwise the milliseconds until the next token.
+         */
+        private long tryAcquire(String key, long now) {
+            AtomicLong bucket = buckets.get(key, it -> new AtomicLong(Long.MIN_VALUE));
+            while (true) {
+                long arrival = bucket.get();
+                long next = Math.max(arrival, now) + refillPeriodMs;
+                long allowedAt = next - capacity * refillPeriodMs;
+                if (allowedAt > now) {
+                    throttledCounter.increment();
+                    return allowedAt - now;
+                }
+                if (bucket.compareAndSet(arrival, next)) {
+                    allowedCounter.increment();
+                    return 0;
+                }
+            }
+        }
+    }
+}
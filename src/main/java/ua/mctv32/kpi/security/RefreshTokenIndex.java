@@ -0,0 +1,198 @@
+package ua.mctv32.kpi.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * In-memory view of the current refresh token of every token family.
+ * <p>
+ * Families and token ids are stored as 64-bit fingerprints in striped open-addressing tables
+ * of primitive arrays, roughly 30 bytes per family, so millions of outstanding tokens stay cheap.
+ * The database remains the source of truth: a fingerprint mismatch only means that the caller
+ * has to confirm the token state there before treating it as reused.
+ */
+@Component
+public class RefreshTokenIndex {
+
+    private static final int STRIPE_BITS = 6;
+    private static final int INITIAL_STRIPE_CAPACITY = 64;
+
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+
+    public RefreshTokenIndex(MeterRegistry meterRegistry) {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(INITIAL_STRIPE_CAPACITY);
+        }
+        Gauge.builder("refresh.tokens.index.size", this, RefreshTokenIndex::size)
+                .description("Refresh token families held in memory")
+                .register(meterRegistry);
+        Gauge.builder("refresh.tokens.index.memory", this, RefreshTokenIndex::memoryBytes)
+                .description("Approximate memory used by the refresh token index")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public void put(UUID familyId, UUID tokenId, Instant expiresAt) {
+        long family = fingerprint(familyId);
+        stripe(family).put(family, fingerprint(tokenId), toMinutes(expiresAt));
+    }
+
+    public boolean isCurrent(UUID familyId, UUID tokenId) {
+        long family = fingerprint(familyId);
+        return stripe(family).get(family) == fingerprint(tokenId);
+    }
+
+    public void remove(UUID familyId) {
+        long family = fingerprint(familyId);
+        stripe(family).remove(family);
+    }
+
+    public int removeExpired(Instant now) {
+        int minutes = toMinutes(now);
+        int removed = 0;
+        for (Stripe stripe : stripes) {
+            removed += stripe.removeExpired(minutes);
+        }
+        return removed;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += stripe.memoryBytes();
+        }
+        return bytes;
+    }
+
+    private Stripe stripe(long fingerprint) {
+        return stripes[(int) (fingerprint >>> (Long.SIZE - STRIPE_BITS))];
+    }
+
+    private static int toMinutes(Instant instant) {
+        return (int) Math.ceilDiv(instant.getEpochSecond(), 60);
+    }
+
+    private static long fingerprint(UUID uuid) {
+        long hash = uuid.getMostSignificantBits() * 0x9E3779B97F4A7C15L ^ uuid.getLeastSignificantBits();
+        hash ^= hash >>> 31;
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Linear probing table keyed by family fingerprint, {@code 0} marks an empty slot.
+     */
+    private static final class Stripe {
+
+        private long[] keys;
+        private long[] values;
+        private int[] expiries;
+        private int size;
+
+        private Stripe(int capacity) {
+            allocate(capacity);
+        }
+
+        private synchronized long get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return 0;
+        }
+
+        private synchronized void put(long key, long value, int expiry) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                rehash(keys.length * 2, Integer.MIN_VALUE);
+            }
+            insert(key, value, expiry);
+        }
+
+        private synchronized void remove(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != key) {
+                if (keys[i] == 0) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            size--;
+            // backward shift deletion keeps probe sequences intact without tombstones
+            for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+                int home = slot(keys[j], mask);
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    expiries[i] = expiries[j];
+                    i = j;
+                }
+            }
+            keys[i] = 0;
+        }
+
+        private synchronized int removeExpired(int now) {
+            int before = size;
+            rehash(keys.length, now);
+            return before - size;
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private synchronized long memoryBytes() {
+            return (long) keys.length * (Long.BYTES * 2 + Integer.BYTES);
+        }
+
+        private void insert(long key, long value, int expiry) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == 0) {
+                size++;
+            }
+            keys[i] = key;
+            values[i] = value;
+            expiries[i] = expiry;
+        }
+
+        private void rehash(int capacity, int expiredBefore) {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            int[] oldExpiries = expiries;
+            allocate(capacity);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0 && oldExpiries[i] > expiredBefore) {
+                    insert(oldKeys[i], oldValues[i], oldExpiries[i]);
+                }
+            }
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            values = new long[capacity];
+            expiries = new int[capacity];
+            size = 0;
+        }
+
+        private static int slot(long key, int mask) {
+            return (int) key & mask;
+        }
+    }
+}
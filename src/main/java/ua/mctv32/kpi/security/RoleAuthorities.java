@@ -0,0 +1,75 @@
+package ua.mctv32.kpi.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import ua.mctv32.kpi.domain.Role;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Interned role sets and authority lists for every combination of {@link Role} values,
+ * indexed by a bitmask of role ordinals.
+ */
+public final class RoleAuthorities {
+
+    private static final Role[] ROLES = Role.values();
+    private static final List<Set<Role>> ROLE_SETS = new ArrayList<>();
+    private static final List<List<GrantedAuthority>> AUTHORITIES = new ArrayList<>();
+
+    static {
+        for (int mask = 0; mask < 1 << ROLES.length; mask++) {
+            EnumSet<Role> roles = EnumSet.noneOf(Role.class);
+            List<GrantedAuthority> authorities = new ArrayList<>();
+            for (Role role : ROLES) {
+                if ((mask & 1 << role.ordinal()) != 0) {
+                    roles.add(role);
+                    authorities.add(new SimpleGrantedAuthority(role.name()));
+                }
+            }
+            ROLE_SETS.add(Collections.unmodifiableSet(roles));
+            AUTHORITIES.add(List.copyOf(authorities));
+        }
+    }
+
+    private RoleAuthorities() {
+    }
+
+    public static int toMask(Collection<Role> roles) {
+        int mask = 0;
+        if (roles != null) {
+            for (Role role : roles) {
+                mask |= 1 << role.ordinal();
+            }
+        }
+        return mask;
+    }
+
+    public static Role roleOf(String name) {
+        for (Role role : ROLES) {
+            if (role.name().equals(name)) {
+                return role;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether {@code mask} only has bits of existing roles set.
+     */
+    public static boolean isMask(int mask) {
+        return mask >= 0 && mask < ROLE_SETS.size();
+    }
+
+    public static Set<Role> roles(int mask) {
+        return ROLE_SETS.get(mask);
+    }
+
+    public static List<GrantedAuthority> authorities(Collection<Role> roles) {
+        return AUTHORITIES.get(toMask(roles));
+    }
+}
@@ -0,0 +1,8 @@
+package ua.mctv32.kpi.security;
+
+/**
+ * {@code WRONG_TYPE} rejects a validly signed refresh token presented where an access token is expected.
+ */
+public enum TokenStatus {
+    VALID, EXPIRED, BAD_SIGNATURE, MALFORMED, REVOKED, WRONG_TYPE
+}
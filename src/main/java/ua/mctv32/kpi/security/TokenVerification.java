@@ -0,0 +1,34 @@
+package ua.mctv32.kpi.security;
+
+import java.util.Optional;
+
+/**
+ * Result of a token verification. {@code tokenId} and {@code familyId} carry the {@code jti} and
+ * refresh token family claims when the token has them.
+ */
+public record TokenVerification(TokenStatus status, UserAuthentication authentication, long expiresAtMillis,
+                                String tokenId, String familyId) {
+
+    public static final TokenVerification EXPIRED = rejected(TokenStatus.EXPIRED);
+    public static final TokenVerification BAD_SIGNATURE = rejected(TokenStatus.BAD_SIGNATURE);
+    public static final TokenVerification MALFORMED = rejected(TokenStatus.MALFORMED);
+    public static final TokenVerification REVOKED = rejected(TokenStatus.REVOKED);
+    public static final TokenVerification WRONG_TYPE = rejected(TokenStatus.WRONG_TYPE);
+
+    public static TokenVerification valid(UserAuthentication authentication, long expiresAtMillis,
+                                          String tokenId, String familyId) {
+        return new TokenVerification(TokenStatus.VALID, authentication, expiresAtMillis, tokenId, familyId);
+    }
+
+    private static TokenVerification rejected(TokenStatus status) {
+        return new TokenVerification(status, null, 0, null, null);
+    }
+
+    public boolean isValid() {
+        return status == TokenStatus.VALID;
+    }
+
+    public Optional<UserAuthentication> toAuthentication() {
+        return Optional.ofNullable(authentication);
+    }
+}
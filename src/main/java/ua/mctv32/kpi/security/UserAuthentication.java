@@ -4,12 +4,15 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import ua.mctv32.kpi.domain.Role;
 
 import java.util.Collection;
 import java.util.Set;
 
+/**
+ * Authenticated user from an access token. Compact tokens do not carry the email, in which case
+ * {@link #getName()} and {@link #getPrincipal()} fall back to the user id.
+ */
 @Data
 @AllArgsConstructor
 public class UserAuthentication implements Authentication {
@@ -20,12 +23,12 @@ public class UserAuthentication implements Authentication {
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return role.stream().map(Enum::name).map(SimpleGrantedAuthority::new).toList();
+        return RoleAuthorities.authorities(role);
     }
 
     @Override
     public String getName() {
-        return email;
+        return email != null ? email : String.valueOf(id);
     }
 
     @Override
@@ -40,7 +43,7 @@ public class UserAuthentication implements Authentication {
 
     @Override
     public Object getPrincipal() {
-        return email;
+        return getName();
     }
 
     @Override
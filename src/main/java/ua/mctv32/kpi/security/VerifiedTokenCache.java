@@ -0,0 +1,90 @@
+package ua.mctv32.kpi.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ua.mctv32.kpi.util.StripedPool;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Size-bounded cache of already verified tokens keyed by the SHA-256 digest of the token.
+ * Every entry expires no later than the {@code exp} claim of the token it was created for.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    public static final String METRIC_NAME = "jwt.verified.tokens";
+
+    private static final StripedPool<MessageDigest> SHA_256 = new StripedPool<>(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final boolean enabled;
+    private final Cache<ByteBuffer, TokenVerification> cache;
+    private final Clock clock;
+
+    public VerifiedTokenCache(@Value("${jwt.cache.enabled}") boolean enabled,
+                              @Value("${jwt.cache.max-size}") long maxSize,
+                              Clock clock, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.clock = clock;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(Expiry.creating((ByteBuffer key, TokenVerification token) ->
+                        Duration.ofMillis(Math.max(0, token.expiresAtMillis() - now()))))
+                .recordStats()
+                .build();
+        if (enabled) {
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, METRIC_NAME);
+        }
+    }
+
+    public TokenVerification get(String token, Function<String, TokenVerification> verifier) {
+        if (!enabled || token == null) {
+            return verifier.apply(token);
+        }
+
+        ByteBuffer key = digest(token);
+        TokenVerification cached = cache.getIfPresent(key);
+        if (cached != null) {
+            if (cached.expiresAtMillis() > now()) {
+                return cached;
+            }
+            cache.invalidate(key);
+        }
+
+        TokenVerification verification = verifier.apply(token);
+        if (verification.isValid()) {
+            cache.put(key, verification);
+        }
+        return verification;
+    }
+
+    private long now() {
+        return clock.instant().toEpochMilli();
+    }
+
+    private static ByteBuffer digest(String token) {
+        MessageDigest sha256 = SHA_256.acquire();
+        try {
+            return ByteBuffer.wrap(sha256.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } finally {
+            SHA_256.release(sha256);
+        }
+    }
+}
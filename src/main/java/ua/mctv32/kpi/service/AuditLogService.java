@@ -0,0 +1,192 @@
+package ua.mctv32.kpi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import ua.mctv32.kpi.domain.AuditEvent;
+import ua.mctv32.kpi.domain.AuditEventType;
+import ua.mctv32.kpi.repository.AuditEventRepository;
+import ua.mctv32.kpi.util.RingBuffer;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records auth events without a database round trip on the request path: {@link #publish} puts the event
+ * into a {@link RingBuffer} and a single writer thread drains it into {@code audit_events}, one multi-row
+ * insert per batch. A batch is written once it has {@code audit.batch-size} events or its oldest event
+ * has waited {@code audit.flush-interval-ms}.
+ * <p>
+ * A full buffer either drops the event ({@code DROP}) or makes the publishing thread wait for free space up
+ * to {@code audit.backpressure-timeout-ms} and then drop it ({@code BLOCK}); dropped events are counted.
+ * Batches that fail to insert are logged and counted, not retried. Buffered events are written on shutdown.
+ */
+@Slf4j
+@Service
+public class AuditLogService {
+
+    public enum FullBufferPolicy {
+        DROP, BLOCK
+    }
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long BACKPRESSURE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    // length of audit_events.email, failed logins carry whatever the client sent
+    private static final int MAX_EMAIL_LENGTH = 255;
+
+    private final AuditEventRepository auditEventRepository;
+    private final Clock clock;
+    private final boolean enabled;
+    private final RingBuffer<AuditEvent> buffer;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final FullBufferPolicy fullBufferPolicy;
+    private final long backpressureTimeoutNanos;
+    private final long shutdownTimeoutMs;
+    private final Thread writer;
+    private volatile boolean running;
+
+    private final Counter writtenCounter;
+    private final Counter droppedCounter;
+    private final Counter failedCounter;
+    private final Timer flushTimer;
+
+    public AuditLogService(AuditEventRepository auditEventRepository, Clock clock,
+                           @Value("${audit.enabled}") boolean enabled,
+                           @Value("${audit.buffer-size}") int bufferSize,
+                           @Value("${audit.batch-size}") int batchSize,
+                           @Value("${audit.flush-interval-ms}") long flushIntervalMs,
+                           @Value("${audit.full-buffer-policy}") FullBufferPolicy fullBufferPolicy,
+                           @Value("${audit.backpressure-timeout-ms}") long backpressureTimeoutMs,
+                           @Value("${audit.shutdown-timeout-ms}") long shutdownTimeoutMs,
+                           MeterRegistry meterRegistry) {
+        this.auditEventRepository = auditEventRepository;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.buffer = new RingBuffer<>(bufferSize);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.fullBufferPolicy = fullBufferPolicy;
+        this.backpressureTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(backpressureTimeoutMs);
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.writer = new CustomizableThreadFactory("audit-writer-").newThread(this::write);
+        this.writer.setDaemon(true);
+
+        this.writtenCounter = Counter.builder("auth.audit.events")
+                .tag("result", "written")
+                .description("Audit events by what became of them")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("auth.audit.events")
+                .tag("result", "dropped")
+                .description("Audit events by what became of them")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("auth.audit.events")
+                .tag("result", "failed")
+                .description("Audit events by what became of them")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("auth.audit.flush")
+                .description("Time spent inserting a batch of audit events")
+                .register(meterRegistry);
+        Gauge.builder("auth.audit.buffer.size", buffer, RingBuffer::size)
+                .description("Audit events waiting to be written")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            running = true;
+            writer.start();
+        }
+    }
+
+    public void publish(AuditEventType type, Long userId, String email) {
+        if (!running) {
+            if (enabled) {
+                droppedCounter.increment();
+            }
+            return;
+        }
+        if (email != null && email.length() > MAX_EMAIL_LENGTH) {
+            email = email.substring(0, MAX_EMAIL_LENGTH);
+        }
+        AuditEvent event = new AuditEvent(type, userId, email, clock.millis());
+        if (buffer.offer(event) || fullBufferPolicy == FullBufferPolicy.BLOCK && offerWithinTimeout(event)) {
+            return;
+        }
+        droppedCounter.increment();
+    }
+
+    private boolean offerWithinTimeout(AuditEvent event) {
+        long deadline = System.nanoTime() + backpressureTimeoutNanos;
+        while (running && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(BACKPRESSURE_PARK_NANOS);
+            if (buffer.offer(event)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void write() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        long batchStartedAt = 0;
+        while (running) {
+            boolean wasEmpty = batch.isEmpty();
+            int drained = buffer.drainTo(batch::add, batchSize - batch.size());
+            if (wasEmpty && drained > 0) {
+                batchStartedAt = System.nanoTime();
+            }
+            if (batch.size() >= batchSize || !batch.isEmpty() && System.nanoTime() - batchStartedAt >= flushIntervalNanos) {
+                flush(batch);
+            } else if (drained == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        // events published while shutting down are in the buffer, write them all
+        do {
+            flush(batch);
+        } while (buffer.drainTo(batch::add, batchSize) > 0);
+    }
+
+    private void flush(List<AuditEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long startedAt = System.nanoTime();
+        try {
+            auditEventRepository.insertAll(batch);
+            writtenCounter.increment(batch.size());
+        } catch (RuntimeException e) {
+            failedCounter.increment(batch.size());
+            log.warn("Failed to write {} audit events", batch.size(), e);
+        } finally {
+            flushTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(shutdownTimeoutMs);
+        if (writer.isAlive()) {
+            log.warn("Audit events were still being written after {} ms, {} left in the buffer",
+                    shutdownTimeoutMs, buffer.size());
+        }
+    }
+}
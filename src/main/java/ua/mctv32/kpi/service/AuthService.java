@@ -1,29 +1,142 @@
 package ua.mctv32.kpi.service;
 
-import lombok.RequiredArgsConstructor;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ua.mctv32.kpi.domain.AuditEventType;
 import ua.mctv32.kpi.domain.User;
 import ua.mctv32.kpi.dto.AuthResponseDto;
 import ua.mctv32.kpi.exception.AuthenticationException;
+import ua.mctv32.kpi.exception.ServiceUnavailableException;
 import ua.mctv32.kpi.repository.UserRepository;
-import ua.mctv32.kpi.security.UserAuthentication;
+import ua.mctv32.kpi.security.TokenVerification;
+import ua.mctv32.kpi.util.Emails;
 
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login and refresh are timed as a whole and by phase: {@code auth.phase} with {@code phase=database}
+ * covers the user lookup and the refresh token write, {@code phase=password} the BCrypt check including
+ * its queue wait. Dividing the phase sums by the {@code auth.requests} sum gives the share of each.
+ * <p>
+ * Successful and rejected logins and refreshes are recorded in the {@link AuditLogService}.
+ */
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class AuthService {
 
     private final JwtService jwtService;
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final RefreshTokenService refreshTokenService;
+    private final TokenRevocationService tokenRevocationService;
+    private final Executor applicationTaskExecutor;
+    private final AuditLogService auditLogService;
+
+    private final Timer loginSuccessTimer;
+    private final Timer loginFailureTimer;
+    private final Timer loginDatabaseTimer;
+    private final Timer loginPasswordTimer;
+    private final Timer refreshSuccessTimer;
+    private final Timer refreshFailureTimer;
+    private final Timer refreshDatabaseTimer;
+
+    public AuthService(JwtService jwtService, UserRepository userRepository,
+                       PasswordHashingService passwordHashingService, RefreshTokenService refreshTokenService,
+                       TokenRevocationService tokenRevocationService, Executor applicationTaskExecutor,
+                       AuditLogService auditLogService, MeterRegistry meterRegistry) {
+        this.jwtService = jwtService;
+        this.userRepository = userRepository;
+        this.passwordHashingService = passwordHashingService;
+        this.refreshTokenService = refreshTokenService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.applicationTaskExecutor = applicationTaskExecutor;
+        this.auditLogService = auditLogService;
+
+        this.loginSuccessTimer = requestTimer("login", "success", meterRegistry);
+        this.loginFailureTimer = requestTimer("login", "failure", meterRegistry);
+        this.loginDatabaseTimer = phaseTimer("login", "database", meterRegistry);
+        this.loginPasswordTimer = phaseTimer("login", "password", meterRegistry);
+        this.refreshSuccessTimer = requestTimer("refresh", "success", meterRegistry);
+        this.refreshFailureTimer = requestTimer("refresh", "failure", meterRegistry);
+        this.refreshDatabaseTimer = phaseTimer("refresh", "database", meterRegistry);
+    }
+
+    static Timer requestTimer(String operation, String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder("auth.requests")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .description("Login and token refresh latency")
+                .register(meterRegistry);
+    }
 
-    public AuthResponseDto login(String email, String password) {
-        User user = userRepository.findByEmail(email)
-                .filter(it -> passwordEncoder.matches(password, it.getPassword()))
+    static Timer phaseTimer(String operation, String phase, MeterRegistry meterRegistry) {
+        return Timer.builder("auth.phase")
+                .tag("operation", operation)
+                .tag("phase", phase)
+                .description("Time login and token refresh spend in the database and on password checks")
+                .register(meterRegistry);
+    }
+
+    public CompletableFuture<AuthResponseDto> login(String email, String password) {
+        long startedAt = System.nanoTime();
+        try {
+            return authenticate(email, password).whenComplete((response, e) -> {
+                record(e == null ? loginSuccessTimer : loginFailureTimer, startedAt);
+                if (e != null) {
+                    auditLoginFailure(e instanceof CompletionException ? e.getCause() : e, email);
+                }
+            });
+        } catch (RuntimeException e) {
+            record(loginFailureTimer, startedAt);
+            auditLoginFailure(e, email);
+            throw e;
+        }
+    }
+
+    /**
+     * Only rejected credentials are audited, not logins turned away by a full hashing queue.
+     */
+    void auditLoginFailure(Throwable e, String email) {
+        if (e instanceof AuthenticationException) {
+            auditLogService.publish(AuditEventType.LOGIN_FAILURE, null, Emails.normalize(email));
+        }
+    }
+
+    private CompletableFuture<AuthResponseDto> authenticate(String email, String password) {
+        long lookupStartedAt = System.nanoTime();
+        User user = userRepository.findByEmail(Emails.normalize(email))
                 .orElseThrow(() -> new AuthenticationException("Invalid email or password"));
+        record(loginDatabaseTimer, lookupStartedAt);
+
+        long passwordStartedAt = System.nanoTime();
+        // the continuation writes the new refresh token, keep it off the password hashing threads
+        return passwordHashingService.matches(password, user.getPassword())
+                .thenApplyAsync(matches -> {
+                    record(loginPasswordTimer, passwordStartedAt);
+                    if (!matches) {
+                        throw new AuthenticationException("Invalid email or password");
+                    }
+                    return issueTokens(user, password);
+                }, applicationTaskExecutor);
+    }
 
+    /**
+     * Issues the tokens of a user whose password was checked. Blocks on the refresh token write.
+     */
+    AuthResponseDto issueTokens(User user, String password) {
         String authToken = jwtService.generateAccessToken(user);
-        String refreshToken = jwtService.generateRefreshToken(user);
+        long issueStartedAt = System.nanoTime();
+        String refreshToken = refreshTokenService.issue(user);
+        record(loginDatabaseTimer, issueStartedAt);
+        rehashIfNeeded(user, password);
+        auditLogService.publish(AuditEventType.LOGIN_SUCCESS, user.getId(), user.getEmail());
 
         return AuthResponseDto.builder()
                 .accessToken(authToken)
@@ -31,18 +144,99 @@ public class AuthService {
                 .build();
     }
 
+    /**
+     * Re-encodes a password hashed with an outdated cost in the background, the login does not wait for it.
+     * A full hashing queue skips the rehash until a later login.
+     */
+    private void rehashIfNeeded(User user, String password) {
+        if (!passwordHashingService.needsRehash(user.getPassword())) {
+            return;
+        }
+        try {
+            passwordHashingService.encode(password)
+                    .thenAcceptAsync(encoded -> userRepository.updatePassword(user.getId(), user.getPassword(), encoded),
+                            applicationTaskExecutor)
+                    .exceptionally(e -> {
+                        log.warn("Failed to rehash the password of user {}", user.getId(), e);
+                        return null;
+                    });
+        } catch (ServiceUnavailableException e) {
+            log.debug("Skipping password rehash of user {}, hashing queue is full", user.getId());
+        }
+    }
+
     public AuthResponseDto refreshTokens(String refreshToken) {
-        User user = jwtService.toAuthentication(refreshToken)
-                .map(UserAuthentication::getId)
-                .flatMap(userRepository::findById)
-                .orElseThrow(() -> new AuthenticationException("Invalid refresh token"));
+        long startedAt = System.nanoTime();
+        boolean success = false;
+        try {
+            TokenVerification verification = verifyRefreshToken(refreshToken);
+            long lookupStartedAt = System.nanoTime();
+            User user = userRepository.findById(verification.authentication().getId())
+                    .orElseThrow(() -> new AuthenticationException("Invalid refresh token"));
+            record(refreshDatabaseTimer, lookupStartedAt);
+
+            AuthResponseDto response = rotateTokens(user, verification);
+            success = true;
+            return response;
+        } catch (AuthenticationException e) {
+            auditRefreshFailure();
+            throw e;
+        } finally {
+            record(success ? refreshSuccessTimer : refreshFailureTimer, startedAt);
+        }
+    }
+
+    void auditRefreshFailure() {
+        auditLogService.publish(AuditEventType.TOKEN_REFRESH_FAILURE, null, null);
+    }
 
+    TokenVerification verifyRefreshToken(String refreshToken) {
+        TokenVerification verification = jwtService.verifyRefreshToken(refreshToken);
+        if (!verification.isValid() || verification.tokenId() == null || verification.familyId() == null) {
+            throw new AuthenticationException("Invalid refresh token");
+        }
+        return verification;
+    }
+
+    /**
+     * Replaces the verified refresh token of {@code user}. Blocks on the refresh token write.
+     */
+    AuthResponseDto rotateTokens(User user, TokenVerification verification) {
         String authToken = jwtService.generateAccessToken(user);
-        String newRefreshToken = jwtService.generateRefreshToken(user);
+        long rotateStartedAt = System.nanoTime();
+        String newRefreshToken = refreshTokenService.rotate(user,
+                UUID.fromString(verification.tokenId()), UUID.fromString(verification.familyId()));
+        record(refreshDatabaseTimer, rotateStartedAt);
+        auditLogService.publish(AuditEventType.TOKEN_REFRESH, user.getId(), null);
 
         return AuthResponseDto.builder()
                 .accessToken(authToken)
                 .refreshToken(newRefreshToken)
                 .build();
     }
+
+    /**
+     * Revokes the access token and, when given, the refresh token family of the same user.
+     */
+    public void logout(String accessToken, String refreshToken) {
+        TokenVerification verification = jwtService.verify(accessToken);
+        if (!verification.isValid() || verification.tokenId() == null) {
+            throw new AuthenticationException("Invalid access token");
+        }
+        tokenRevocationService.revoke(UUID.fromString(verification.tokenId()),
+                Instant.ofEpochMilli(verification.expiresAtMillis()));
+
+        if (refreshToken == null) {
+            return;
+        }
+        TokenVerification refreshVerification = jwtService.verifyRefreshToken(refreshToken);
+        if (refreshVerification.isValid() && refreshVerification.familyId() != null
+                && refreshVerification.authentication().getId().equals(verification.authentication().getId())) {
+            refreshTokenService.revokeFamily(UUID.fromString(refreshVerification.familyId()));
+        }
+    }
+
+    static void record(Timer timer, long startedAt) {
+        timer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
 }
@@ -0,0 +1,281 @@
+package ua.mctv32.kpi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Tells the other instances which cached entries went stale, over PostgreSQL {@code LISTEN/NOTIFY} on the
+ * database they already share. {@link #publish} sends {@code <topic>:<key>} on the configured channel, a
+ * listener thread on every instance keeps its own connection listening to it and hands the keys to the
+ * subscriber of the topic.
+ * <p>
+ * Notifications arriving within {@code cluster.invalidation.coalesce-ms} of each other are applied together,
+ * duplicate keys once; more than {@code cluster.invalidation.max-keys} keys of a topic resync the topic
+ * instead. {@code NOTIFY} is not durable, so every topic is resynced whenever the listener (re)connects.
+ * Instances also receive their own notifications. Only PostgreSQL supports this, on other databases
+ * publishing does nothing and entries stay stale on other instances until they expire.
+ */
+@Slf4j
+@Service
+public class ClusterInvalidationService {
+
+    private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+    private static final char SEPARATOR = ':';
+    private static final String NOTIFY = "select pg_notify(?, ?)";
+    private static final int POLL_TIMEOUT_MS = 500;
+    private static final long VALIDATION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    // tells the listener connection apart in pg_stat_activity
+    static final String APPLICATION_NAME = "kpi-invalidation-listener";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String url;
+    private final Properties connectionProperties = new Properties();
+    private final boolean enabled;
+    private final String channel;
+    private final long coalesceNanos;
+    private final int maxKeys;
+    private final long reconnectDelayMs;
+    private final long maxReconnectDelayMs;
+    private final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final Thread listener;
+    private volatile boolean running;
+    private volatile boolean listening;
+
+    private final Counter publishedCounter;
+    private final Counter publishFailedCounter;
+    private final Counter receivedCounter;
+    private final Counter resyncCounter;
+
+    public ClusterInvalidationService(JdbcTemplate jdbcTemplate,
+                                      @Value("${spring.datasource.url}") String url,
+                                      @Value("${spring.datasource.username}") String username,
+                                      @Value("${spring.datasource.password}") String password,
+                                      @Value("${cluster.invalidation.enabled}") boolean enabled,
+                                      @Value("${cluster.invalidation.channel}") String channel,
+                                      @Value("${cluster.invalidation.coalesce-ms}") long coalesceMs,
+                                      @Value("${cluster.invalidation.max-keys}") int maxKeys,
+                                      @Value("${cluster.invalidation.reconnect-delay-ms}") long reconnectDelayMs,
+                                      @Value("${cluster.invalidation.max-reconnect-delay-ms}") long maxReconnectDelayMs,
+                                      MeterRegistry meterRegistry) {
+        if (!CHANNEL.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Channel must be a lowercase identifier, was " + channel);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.url = url;
+        if (username != null) {
+            connectionProperties.setProperty("user", username);
+        }
+        if (password != null) {
+            connectionProperties.setProperty("password", password);
+        }
+        connectionProperties.setProperty("ApplicationName", APPLICATION_NAME);
+        this.enabled = enabled && url.startsWith("jdbc:postgresql:");
+        this.channel = channel;
+        this.coalesceNanos = TimeUnit.MILLISECONDS.toNanos(coalesceMs);
+        this.maxKeys = maxKeys;
+        this.reconnectDelayMs = reconnectDelayMs;
+        this.maxReconnectDelayMs = maxReconnectDelayMs;
+        this.listener = new CustomizableThreadFactory("cluster-invalidation-").newThread(this::listen);
+        this.listener.setDaemon(true);
+
+        this.publishedCounter = Counter.builder("cluster.invalidation.notifications")
+                .tag("direction", "published")
+                .description("Invalidation notifications by direction")
+                .register(meterRegistry);
+        this.receivedCounter = Counter.builder("cluster.invalidation.notifications")
+                .tag("direction", "received")
+                .description("Invalidation notifications by direction")
+                .register(meterRegistry);
+        this.publishFailedCounter = Counter.builder("cluster.invalidation.publish.failures")
+                .description("Invalidations other instances were not told about")
+                .register(meterRegistry);
+        this.resyncCounter = Counter.builder("cluster.invalidation.resyncs")
+                .description("Topics resynced after a reconnect or a burst of more than max-keys keys")
+                .register(meterRegistry);
+        Gauge.builder("cluster.invalidation.listening", this, it -> it.listening ? 1 : 0)
+                .description("Whether this instance is listening for invalidations of the other instances")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers the handlers of {@code topic}: {@code invalidate} receives the keys published since the
+     * last call, {@code resync} runs when notifications may have been missed and has to drop or reload
+     * everything of the topic. Both run on the listener thread.
+     */
+    public void subscribe(String topic, Consumer<Set<String>> invalidate, Runnable resync) {
+        if (topic.indexOf(SEPARATOR) >= 0) {
+            throw new IllegalArgumentException("Topic must not contain '" + SEPARATOR + "', was " + topic);
+        }
+        subscribers.put(topic, new Subscriber(invalidate, resync));
+    }
+
+    /**
+     * Sends the notification right away, or on commit when called within a transaction. Failures are logged
+     * and counted only, the caller's change is already made.
+     */
+    public void publish(String topic, Object key) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            jdbcTemplate.query(NOTIFY, (RowCallbackHandler) resultSet -> {
+            }, channel, topic + SEPARATOR + key);
+            publishedCounter.increment();
+        } catch (DataAccessException e) {
+            publishFailedCounter.increment();
+            log.warn("Failed to publish the invalidation of {} {}", topic, key, e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            running = true;
+            listener.start();
+        } else {
+            log.info("Cluster invalidation is off, other instances see changes once their cached entries expire");
+        }
+    }
+
+    private void listen() {
+        long delayMs = reconnectDelayMs;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, connectionProperties)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                listening = true;
+                delayMs = reconnectDelayMs;
+                // entries cached before LISTEN, or while disconnected, may have missed their notification
+                subscribers.keySet().forEach(this::resync);
+                receive(connection);
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("Invalidation listener disconnected, reconnecting in {} ms", delayMs, e);
+                }
+            } finally {
+                listening = false;
+            }
+            if (running) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(delayMs));
+                delayMs = Math.min(delayMs * 2, maxReconnectDelayMs);
+            }
+        }
+    }
+
+    private void receive(Connection connection) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        long lastActivity = System.nanoTime();
+        while (running) {
+            List<String> payloads = new ArrayList<>();
+            collect(pgConnection.getNotifications(POLL_TIMEOUT_MS), payloads);
+            if (payloads.isEmpty()) {
+                if (System.nanoTime() - lastActivity >= VALIDATION_INTERVAL_NANOS) {
+                    // a silently dropped connection would otherwise look like a quiet channel
+                    if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                        throw new SQLException("Listener connection is no longer valid");
+                    }
+                    lastActivity = System.nanoTime();
+                }
+                continue;
+            }
+            long deadline = System.nanoTime() + coalesceNanos;
+            for (long remaining = coalesceNanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+                // a timeout of 0 would block until the next notification
+                collect(pgConnection.getNotifications((int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining))), payloads);
+            }
+            dispatch(payloads);
+            lastActivity = System.nanoTime();
+        }
+    }
+
+    private static void collect(PGNotification[] notifications, List<String> payloads) {
+        if (notifications != null) {
+            for (PGNotification notification : notifications) {
+                payloads.add(notification.getParameter());
+            }
+        }
+    }
+
+    void dispatch(List<String> payloads) {
+        receivedCounter.increment(payloads.size());
+        Map<String, Set<String>> keysByTopic = new HashMap<>();
+        for (String payload : payloads) {
+            int separator = payload.indexOf(SEPARATOR);
+            if (separator > 0) {
+                keysByTopic.computeIfAbsent(payload.substring(0, separator), it -> new HashSet<>())
+                        .add(payload.substring(separator + 1));
+            }
+        }
+        keysByTopic.forEach((topic, keys) -> {
+            Subscriber subscriber = subscribers.get(topic);
+            if (subscriber == null) {
+                return;
+            }
+            if (keys.size() > maxKeys) {
+                resync(topic);
+                return;
+            }
+            try {
+                subscriber.invalidate().accept(Collections.unmodifiableSet(keys));
+            } catch (RuntimeException e) {
+                log.warn("Failed to invalidate {} keys of {}, resyncing", keys.size(), topic, e);
+                resync(topic);
+            }
+        });
+    }
+
+    private void resync(String topic) {
+        resyncCounter.increment();
+        try {
+            subscribers.get(topic).resync().run();
+        } catch (RuntimeException e) {
+            log.warn("Failed to resync {}", topic, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(listener);
+        listener.join(POLL_TIMEOUT_MS * 4L);
+    }
+
+    private record Subscriber(Consumer<Set<String>> invalidate, Runnable resync) {
+    }
+}
@@ -1,82 +1,344 @@
 package ua.mctv32.kpi.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.IdGenerator;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import ua.mctv32.kpi.domain.Role;
 import ua.mctv32.kpi.domain.User;
+import ua.mctv32.kpi.security.JwtKey;
+import ua.mctv32.kpi.security.JwtKeySet;
+import ua.mctv32.kpi.security.RoleAuthorities;
+import ua.mctv32.kpi.security.TokenStatus;
+import ua.mctv32.kpi.security.TokenVerification;
 import ua.mctv32.kpi.security.UserAuthentication;
+import ua.mctv32.kpi.security.VerifiedTokenCache;
 
-import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class JwtService {
 
     public static final String JWT_USER_ID_CLAIM = "userId";
     public static final String JWT_ROLES_CLAIM = "roles";
+    public static final String JWT_FAMILY_ID_CLAIM = "fid";
+    public static final String JWT_ROLE_MASK_CLAIM = "rol";
 
-    private final SecretKey JWT_SECRET_KEY;
+    private static final Base64.Decoder BASE64_URL_DECODER = Base64.getUrlDecoder();
+
+    private final JwtKeySet jwtKeySet;
     private final long ACCESS_TOKEN_TLL_MS;
     private final long REFRESH_TOKEN_TLL_MS;
+    private final int formatVersion;
 
-    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory;
     private final Clock clock;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final IdGenerator idGenerator;
+    private final TokenRevocationService tokenRevocationService;
+
+    private final Timer accessTokenGenerateTimer;
+    private final Timer refreshTokenGenerateTimer;
+    private final Map<TokenStatus, Timer> accessTokenVerifyTimers;
+    private final Map<TokenStatus, Timer> refreshTokenVerifyTimers;
+    private final Map<TokenStatus, Timer> introspectionVerifyTimers;
 
-    public JwtService(@Value("${jwt.secret}") String secret,
+    public JwtService(JwtKeySet jwtKeySet,
                       @Value("${jwt.access-token-ttl-ms}") long accessTokenTtlMs,
                       @Value("${jwt.refresh-token-ttl-ms}") long refreshTokenTtlMs,
-                      ObjectMapper objectMapper, Clock clock) {
-        this.JWT_SECRET_KEY = Keys.hmacShaKeyFor(secret.getBytes());
+                      @Value("${jwt.format-version}") int formatVersion,
+                      ObjectMapper objectMapper, Clock clock, VerifiedTokenCache verifiedTokenCache,
+                      IdGenerator idGenerator, TokenRevocationService tokenRevocationService,
+                      MeterRegistry meterRegistry) {
+        this.jwtKeySet = jwtKeySet;
         this.ACCESS_TOKEN_TLL_MS = accessTokenTtlMs;
         this.REFRESH_TOKEN_TLL_MS = refreshTokenTtlMs;
-        this.objectMapper = objectMapper;
+        if (formatVersion != JwtKey.LEGACY_FORMAT && formatVersion != JwtKey.COMPACT_FORMAT) {
+            throw new IllegalArgumentException("Unsupported token format version " + formatVersion);
+        }
+        this.formatVersion = formatVersion;
+        this.jsonFactory = objectMapper.getFactory().rebuild()
+                .recyclerPool(JsonRecyclerPools.sharedConcurrentDequePool())
+                .build();
         this.clock = clock;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.idGenerator = idGenerator;
+        this.tokenRevocationService = tokenRevocationService;
+
+        this.accessTokenGenerateTimer = generateTimer("access", meterRegistry);
+        this.refreshTokenGenerateTimer = generateTimer("refresh", meterRegistry);
+        this.accessTokenVerifyTimers = verifyTimers("access", meterRegistry);
+        this.refreshTokenVerifyTimers = verifyTimers("refresh", meterRegistry);
+        this.introspectionVerifyTimers = verifyTimers("introspection", meterRegistry);
+    }
+
+    private static Timer generateTimer(String type, MeterRegistry meterRegistry) {
+        return Timer.builder("jwt.generate")
+                .tag("type", type)
+                .description("Time to build and sign a token")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Timers are registered upfront so that recording a verification is a map lookup, not a registry lookup.
+     */
+    private static Map<TokenStatus, Timer> verifyTimers(String type, MeterRegistry meterRegistry) {
+        Map<TokenStatus, Timer> timers = new EnumMap<>(TokenStatus.class);
+        for (TokenStatus status : TokenStatus.values()) {
+            timers.put(status, Timer.builder("jwt.verify")
+                    .tag("type", type)
+                    .tag("outcome", status.name().toLowerCase().replace('_', '-'))
+                    .description("Time to verify a token, cached verifications included")
+                    .register(meterRegistry));
+        }
+        return timers;
     }
 
     public String generateAccessToken(User user) {
-        return generateToken(user, ACCESS_TOKEN_TLL_MS);
+        long startedAt = System.nanoTime();
+        String token = generateToken(user, clock.instant(), ACCESS_TOKEN_TLL_MS, idGenerator.generateId(), null);
+        accessTokenGenerateTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        return token;
+    }
+
+    /**
+     * Generates a refresh token expiring at {@link #refreshTokenExpiration(Instant)} of {@code issuedAt}.
+     */
+    public String generateRefreshToken(User user, Instant issuedAt, UUID tokenId, UUID familyId) {
+        long startedAt = System.nanoTime();
+        String token = generateToken(user, issuedAt, REFRESH_TOKEN_TLL_MS, tokenId, familyId);
+        refreshTokenGenerateTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        return token;
     }
 
-    public String generateRefreshToken(User user) {
-        return generateToken(user, REFRESH_TOKEN_TLL_MS);
+    public Instant refreshTokenExpiration(Instant issuedAt) {
+        return Instant.ofEpochSecond(issuedAt.plusMillis(REFRESH_TOKEN_TLL_MS).getEpochSecond());
     }
 
-    private String generateToken(User user, long ttl) {
-        Instant now = clock.instant();
+    /**
+     * The compact format carries the user id as the subject and the roles as a bitmask of {@link Role}
+     * ordinals, without the email and the issue time. The legacy format is kept for rollouts: verification
+     * accepts both, so instances still issuing legacy tokens and instances issuing compact ones can run side by side.
+     */
+    private String generateToken(User user, Instant now, long ttl, UUID tokenId, UUID familyId) {
+        JwtKey signingKey = jwtKeySet.signingKey();
+        if (formatVersion == JwtKey.COMPACT_FORMAT) {
+            return Jwts.builder()
+                    .header().keyId(signingKey.getKid()).add(JwtKey.FORMAT_HEADER, JwtKey.COMPACT_FORMAT).and()
+                    .id(tokenId == null ? null : tokenId.toString())
+                    .subject(String.valueOf(user.getId()))
+                    .claim(JWT_ROLE_MASK_CLAIM, RoleAuthorities.toMask(user.getRoles()))
+                    .claim(JWT_FAMILY_ID_CLAIM, familyId == null ? null : familyId.toString())
+                    .expiration(new Date(now.plusMillis(ttl).toEpochMilli()))
+                    .signWith(signingKey.getSigningKey())
+                    .compact();
+        }
         return Jwts.builder()
+                .header().keyId(signingKey.getKid()).and()
+                .id(tokenId == null ? null : tokenId.toString())
                 .subject(user.getEmail())
                 .claim(JWT_USER_ID_CLAIM, user.getId())
                 .claim(JWT_ROLES_CLAIM, user.getRoles())
+                .claim(JWT_FAMILY_ID_CLAIM, familyId == null ? null : familyId.toString())
                 .issuedAt(new Date(now.toEpochMilli()))
                 .expiration(new Date(now.plusMillis(ttl).toEpochMilli()))
-                .signWith(JWT_SECRET_KEY)
+                .signWith(signingKey.getSigningKey())
                 .compact();
     }
 
     public Optional<UserAuthentication> toAuthentication(String accessToken) {
+        return verify(accessToken).toAuthentication();
+    }
+
+    /**
+     * Verifies the access token without relying on exceptions for the common rejections:
+     * unexpected header, bad signature, expiration, revocation and refresh tokens are reported through the
+     * returned status. Revocation is checked on every call, cached verifications included.
+     */
+    public TokenVerification verify(String token) {
+        long startedAt = System.nanoTime();
+        TokenVerification verification = verifiedTokenCache.get(token, this::verifyAccessToken);
+        if (verification.isValid() && tokenRevocationService.isRevoked(verification.tokenId())) {
+            verification = TokenVerification.REVOKED;
+        }
+        recordAccessTokenVerification(verification, startedAt);
+        return verification;
+    }
+
+    /**
+     * Same as {@link #verify(String)} for callers that must not block: the revocation lookup, needed only
+     * when the Bloom filter matches the token id, runs on {@code blockingScheduler}.
+     */
+    public Mono<TokenVerification> verifyAsync(String token, Scheduler blockingScheduler) {
+        long startedAt = System.nanoTime();
+        TokenVerification verification = verifiedTokenCache.get(token, this::verifyAccessToken);
+        if (!verification.isValid() || !tokenRevocationService.mightBeRevoked(verification.tokenId())) {
+            recordAccessTokenVerification(verification, startedAt);
+            return Mono.just(verification);
+        }
+        return Mono.fromCallable(() -> tokenRevocationService.isRevoked(verification.tokenId())
+                        ? TokenVerification.REVOKED
+                        : verification)
+                .subscribeOn(blockingScheduler)
+                .doOnNext(it -> recordAccessTokenVerification(it, startedAt));
+    }
+
+    /**
+     * Same checks as {@link #verify(String)} for tokens introspected on behalf of other services. Bypasses
+     * the verified token cache, which is sized for the tokens of this instance's own requests, and is timed
+     * separately from them.
+     */
+    public TokenVerification introspect(String token) {
+        long startedAt = System.nanoTime();
+        TokenVerification verification = verifyAccessToken(token);
+        if (verification.isValid() && tokenRevocationService.isRevoked(verification.tokenId())) {
+            verification = TokenVerification.REVOKED;
+        }
+        introspectionVerifyTimers.get(verification.status()).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        return verification;
+    }
+
+    private void recordAccessTokenVerification(TokenVerification verification, long startedAt) {
+        accessTokenVerifyTimers.get(verification.status()).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Refresh tokens are single-use, so they bypass the verified token cache.
+     */
+    public TokenVerification verifyRefreshToken(String token) {
+        long startedAt = System.nanoTime();
+        TokenVerification verification = verifySignedToken(token);
+        refreshTokenVerifyTimers.get(verification.status()).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        return verification;
+    }
+
+    /**
+     * Refresh tokens are signed with the same keys, only their family id tells them apart. They live for
+     * weeks and their revocation only covers {@code /auth/refresh}, so they must not pass as access tokens.
+     */
+    private TokenVerification verifyAccessToken(String token) {
+        TokenVerification verification = verifySignedToken(token);
+        return verification.isValid() && verification.familyId() != null ? TokenVerification.WRONG_TYPE : verification;
+    }
+
+    private TokenVerification verifySignedToken(String token) {
+        if (token == null) {
+            return TokenVerification.MALFORMED;
+        }
+        int headerEnd = token.indexOf('.');
+        JwtKey key = headerEnd < 0 ? null : jwtKeySet.find(token, headerEnd);
+        if (key == null) {
+            return TokenVerification.MALFORMED;
+        }
+        int payloadEnd = token.indexOf('.', headerEnd + 1);
+        if (payloadEnd < 0 || token.indexOf('.', payloadEnd + 1) >= 0) {
+            return TokenVerification.MALFORMED;
+        }
+
+        byte[] bytes = token.getBytes(StandardCharsets.US_ASCII);
+        if (!key.verify(bytes, payloadEnd)) {
+            return TokenVerification.BAD_SIGNATURE;
+        }
+        return readClaims(bytes, headerEnd + 1, payloadEnd, key.formatOf(token, headerEnd));
+    }
+
+    private TokenVerification readClaims(byte[] token, int payloadStart, int payloadEnd, int format) {
+        String tokenId = null;
+        String familyId = null;
+        String subject = null;
+        Long userId = null;
+        int roles = -1;
+        int roleMask = -1;
+        long expiration = -1;
+
         try {
-            Claims claims = Jwts.parser()
-                    .clock(() -> new Date(clock.instant().toEpochMilli()))
-                    .verifyWith(JWT_SECRET_KEY)
-                    .build()
-                    .parseSignedClaims(accessToken)
-                    .getPayload();
-
-            return Optional.of(new UserAuthentication(
-                    claims.get(JWT_USER_ID_CLAIM, Long.class),
-                    claims.getSubject(),
-                    objectMapper.convertValue(claims.get(JWT_ROLES_CLAIM), new TypeReference<>() {
-                    }))
-            );
-        } catch (Exception e) {
-            return Optional.empty();
+            ByteBuffer payload = BASE64_URL_DECODER.decode(ByteBuffer.wrap(token, payloadStart, payloadEnd - payloadStart));
+            try (JsonParser parser = jsonFactory.createParser(payload.array(), 0, payload.limit())) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return TokenVerification.MALFORMED;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String claim = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    switch (claim) {
+                        case Claims.ID -> tokenId = parser.getValueAsString();
+                        case Claims.SUBJECT -> subject = parser.getValueAsString();
+                        case Claims.EXPIRATION -> expiration = value.isNumeric() ? parser.getLongValue() : -1;
+                        case JWT_USER_ID_CLAIM -> userId = value.isNumeric() ? parser.getLongValue() : null;
+                        case JWT_ROLES_CLAIM -> roles = readRoles(parser, value);
+                        case JWT_ROLE_MASK_CLAIM -> roleMask = value == JsonToken.VALUE_NUMBER_INT ? parser.getIntValue() : -1;
+                        case JWT_FAMILY_ID_CLAIM -> familyId = parser.getValueAsString();
+                        default -> parser.skipChildren();
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            return TokenVerification.MALFORMED;
+        }
+
+        String email = subject;
+        if (format == JwtKey.COMPACT_FORMAT) {
+            userId = parseUserId(subject);
+            email = null;
+            roles = RoleAuthorities.isMask(roleMask) ? roleMask : -1;
+        } else if (subject == null) {
+            return TokenVerification.MALFORMED;
+        }
+        if (userId == null || roles < 0 || expiration < 0) {
+            return TokenVerification.MALFORMED;
+        }
+        long expiresAtMillis = expiration * 1000;
+        if (clock.instant().toEpochMilli() >= expiresAtMillis) {
+            return TokenVerification.EXPIRED;
+        }
+        UserAuthentication authentication = new UserAuthentication(userId, email, RoleAuthorities.roles(roles));
+        return TokenVerification.valid(authentication, expiresAtMillis, tokenId, familyId);
+    }
+
+    private static Long parseUserId(String subject) {
+        if (subject == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(subject);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static int readRoles(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            return -1;
+        }
+        int mask = 0;
+        while (parser.nextToken() == JsonToken.VALUE_STRING) {
+            Role role = RoleAuthorities.roleOf(parser.getText());
+            if (role == null) {
+                return -1;
+            }
+            mask |= 1 << role.ordinal();
         }
+        return parser.currentToken() == JsonToken.END_ARRAY ? mask : -1;
     }
 }
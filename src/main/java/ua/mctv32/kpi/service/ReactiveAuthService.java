@@ -0,0 +1,120 @@
+package ua.mctv32.kpi.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import ua.mctv32.kpi.dto.AuthResponseDto;
+import ua.mctv32.kpi.exception.AuthenticationException;
+import ua.mctv32.kpi.repository.ReactiveUserRepository;
+import ua.mctv32.kpi.security.TokenVerification;
+import ua.mctv32.kpi.util.Emails;
+
+import static ua.mctv32.kpi.service.AuthService.record;
+
+/**
+ * {@link AuthService} for the reactive profile. Users are looked up over R2DBC and BCrypt runs on the
+ * bounded password hashing pool; the refresh token writes reuse {@link AuthService} and, being JPA,
+ * run on the bounded elastic scheduler. Records the same {@code auth.requests} and {@code auth.phase} timers
+ * and audit events.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveAuthService {
+
+    private final AuthService authService;
+    private final ReactiveUserRepository reactiveUserRepository;
+    private final PasswordHashingService passwordHashingService;
+    private final Scheduler blockingScheduler;
+
+    private final Timer loginSuccessTimer;
+    private final Timer loginFailureTimer;
+    private final Timer loginDatabaseTimer;
+    private final Timer loginPasswordTimer;
+    private final Timer refreshSuccessTimer;
+    private final Timer refreshFailureTimer;
+    private final Timer refreshDatabaseTimer;
+
+    public ReactiveAuthService(AuthService authService, ReactiveUserRepository reactiveUserRepository,
+                               PasswordHashingService passwordHashingService, MeterRegistry meterRegistry) {
+        this.authService = authService;
+        this.reactiveUserRepository = reactiveUserRepository;
+        this.passwordHashingService = passwordHashingService;
+        this.blockingScheduler = Schedulers.boundedElastic();
+
+        this.loginSuccessTimer = AuthService.requestTimer("login", "success", meterRegistry);
+        this.loginFailureTimer = AuthService.requestTimer("login", "failure", meterRegistry);
+        this.loginDatabaseTimer = AuthService.phaseTimer("login", "database", meterRegistry);
+        this.loginPasswordTimer = AuthService.phaseTimer("login", "password", meterRegistry);
+        this.refreshSuccessTimer = AuthService.requestTimer("refresh", "success", meterRegistry);
+        this.refreshFailureTimer = AuthService.requestTimer("refresh", "failure", meterRegistry);
+        this.refreshDatabaseTimer = AuthService.phaseTimer("refresh", "database", meterRegistry);
+    }
+
+    public Mono<AuthResponseDto> login(String email, String password) {
+        return Mono.defer(() -> {
+            long startedAt = System.nanoTime();
+            return authenticate(email, password)
+                    .doOnSuccess(response -> record(loginSuccessTimer, startedAt))
+                    .doOnError(e -> {
+                        record(loginFailureTimer, startedAt);
+                        authService.auditLoginFailure(e, email);
+                    });
+        });
+    }
+
+    private Mono<AuthResponseDto> authenticate(String email, String password) {
+        long lookupStartedAt = System.nanoTime();
+        return reactiveUserRepository.findByEmail(Emails.normalize(email))
+                .switchIfEmpty(Mono.error(() -> new AuthenticationException("Invalid email or password")))
+                .flatMap(user -> {
+                    record(loginDatabaseTimer, lookupStartedAt);
+                    long passwordStartedAt = System.nanoTime();
+                    return Mono.fromFuture(() -> passwordHashingService.matches(password, user.getPassword()))
+                            .doOnNext(matches -> record(loginPasswordTimer, passwordStartedAt))
+                            // the refresh token write blocks, keep it off the hashing threads and the event loop
+                            .publishOn(blockingScheduler)
+                            .map(matches -> {
+                                if (!matches) {
+                                    throw new AuthenticationException("Invalid email or password");
+                                }
+                                return authService.issueTokens(user, password);
+                            });
+                });
+    }
+
+    public Mono<AuthResponseDto> refreshTokens(String refreshToken) {
+        return Mono.defer(() -> {
+            long startedAt = System.nanoTime();
+            TokenVerification verification;
+            try {
+                verification = authService.verifyRefreshToken(refreshToken);
+            } catch (AuthenticationException e) {
+                record(refreshFailureTimer, startedAt);
+                authService.auditRefreshFailure();
+                return Mono.error(e);
+            }
+            long lookupStartedAt = System.nanoTime();
+            return reactiveUserRepository.findById(verification.authentication().getId())
+                    .switchIfEmpty(Mono.error(() -> new AuthenticationException("Invalid refresh token")))
+                    .doOnNext(user -> record(refreshDatabaseTimer, lookupStartedAt))
+                    .publishOn(blockingScheduler)
+                    .map(user -> authService.rotateTokens(user, verification))
+                    .doOnSuccess(response -> record(refreshSuccessTimer, startedAt))
+                    .doOnError(e -> {
+                        record(refreshFailureTimer, startedAt);
+                        if (e instanceof AuthenticationException) {
+                            authService.auditRefreshFailure();
+                        }
+                    });
+        });
+    }
+
+    public Mono<Void> logout(String accessToken, String refreshToken) {
+        return Mono.<Void>fromRunnable(() -> authService.logout(accessToken, refreshToken))
+                .subscribeOn(blockingScheduler);
+    }
+}
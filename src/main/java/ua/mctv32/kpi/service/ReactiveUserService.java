@@ -0,0 +1,97 @@
+package ua.mctv32.kpi.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ua.mctv32.kpi.dto.UserBatchResponseDto;
+import ua.mctv32.kpi.dto.UserDto;
+import ua.mctv32.kpi.dto.UserPageDto;
+import ua.mctv32.kpi.exception.NotFoundException;
+import ua.mctv32.kpi.repository.ReactiveUserRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link UserService} lookups for the reactive profile. Shares the cache of {@link UserService},
+ * misses are loaded over R2DBC.
+ */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveUserService {
+
+    private final UserService userService;
+    private final ReactiveUserRepository reactiveUserRepository;
+
+    public Mono<UserDto> findById(Long id) {
+        UserDto cached = userService.findCached(List.of(id)).get(id);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return reactiveUserRepository.findDtoById(id)
+                .doOnNext(userService::cache)
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("User not found")));
+    }
+
+    /**
+     * Same result as {@link UserService#findPage}.
+     */
+    public Mono<UserPageDto> findPage(Long afterId, Integer limit) {
+        return Mono.defer(() -> {
+            int size = userService.checkPageSize(limit);
+            return reactiveUserRepository.findDtosAfter(afterId == null ? Long.MIN_VALUE : afterId, size)
+                    .collectList()
+                    .map(users -> UserService.toPage(users, size));
+        });
+    }
+
+    public Flux<UserDto> exportAll() {
+        return reactiveUserRepository.streamAll();
+    }
+
+    /**
+     * Same result as {@link UserService#findAllByIds}: cached users are served from memory, the rest of
+     * every chunk is loaded with a single {@code IN} query, chunks are queried one after another.
+     */
+    public Mono<UserBatchResponseDto> findAllByIds(Collection<Long> ids) {
+        return Mono.defer(() -> {
+            userService.checkBatchSize(ids);
+            List<UserDto> users = new ArrayList<>(ids.size());
+            List<Long> missing = new ArrayList<>();
+            return Flux.fromIterable(ids)
+                    .buffer(userService.getBatchChunkSize())
+                    .concatMap(chunk -> findChunk(chunk, users, missing))
+                    .then(Mono.fromSupplier(() -> new UserBatchResponseDto(users, missing)));
+        });
+    }
+
+    private Mono<Void> findChunk(List<Long> ids, List<UserDto> users, List<Long> missing) {
+        Map<Long, UserDto> cached = userService.findCached(ids);
+        users.addAll(cached.values());
+
+        List<Long> toLoad = cached.isEmpty() ? ids : ids.stream().filter(id -> !cached.containsKey(id)).toList();
+        if (toLoad.isEmpty()) {
+            return Mono.empty();
+        }
+        Set<Long> found = new HashSet<>();
+        return reactiveUserRepository.findDtosByIds(toLoad)
+                .doOnNext(user -> {
+                    found.add(user.getId());
+                    users.add(user);
+                })
+                .then(Mono.fromRunnable(() -> {
+                    for (Long id : toLoad) {
+                        if (!found.contains(id)) {
+                            missing.add(id);
+                        }
+                    }
+                }));
+    }
+}
@@ -0,0 +1,110 @@
+package ua.mctv32.kpi.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ua.mctv32.kpi.domain.RefreshToken;
+import ua.mctv32.kpi.domain.RefreshTokenStatus;
+import ua.mctv32.kpi.domain.User;
+import ua.mctv32.kpi.exception.AuthenticationException;
+import ua.mctv32.kpi.repository.RefreshTokenRepository;
+import ua.mctv32.kpi.security.RefreshTokenIndex;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Issues and rotates refresh tokens. Every login starts a token family, every refresh marks the
+ * presented token as used and issues the next token of the same family. Presenting a token that is
+ * no longer current revokes the whole family.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RefreshTokenService {
+
+    private final JwtService jwtService;
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final RefreshTokenIndex refreshTokenIndex;
+    private final Clock clock;
+
+    @Transactional
+    public String issue(User user) {
+        return issue(user, UUID.randomUUID());
+    }
+
+    @Transactional(noRollbackFor = AuthenticationException.class)
+    public String rotate(User user, UUID tokenId, UUID familyId) {
+        boolean current = refreshTokenIndex.isCurrent(familyId, tokenId)
+                || refreshTokenRepository.findById(tokenId)
+                .filter(it -> it.getStatus() == RefreshTokenStatus.ACTIVE)
+                .isPresent();
+
+        if (!current || refreshTokenRepository.markUsed(tokenId) == 0) {
+            log.warn("Refresh token reuse detected, revoking token family {} of user {}", familyId, user.getId());
+            revokeFamily(familyId);
+            throw new AuthenticationException("Invalid refresh token");
+        }
+        return issue(user, familyId);
+    }
+
+    /**
+     * Refresh tokens are refused as bearer tokens by {@link JwtService#verify}, so a revoked family can
+     * no longer be used anywhere.
+     */
+    @Transactional
+    public void revokeFamily(UUID familyId) {
+        refreshTokenRepository.revokeFamily(familyId);
+        afterCommit(() -> refreshTokenIndex.remove(familyId));
+    }
+
+    @Transactional(readOnly = true)
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try (Stream<RefreshToken> tokens = refreshTokenRepository.streamActive(clock.instant())) {
+            tokens.forEach(it -> refreshTokenIndex.put(it.getFamilyId(), it.getId(), it.getExpiresAt()));
+        }
+        log.info("Loaded {} refresh token families into memory", refreshTokenIndex.size());
+    }
+
+    @Transactional
+    @Scheduled(fixedDelayString = "${jwt.refresh-tokens.cleanup-interval-ms}")
+    public void removeExpired() {
+        Instant now = clock.instant();
+        refreshTokenIndex.removeExpired(now);
+        refreshTokenRepository.deleteExpired(now);
+    }
+
+    private String issue(User user, UUID familyId) {
+        Instant issuedAt = clock.instant();
+        RefreshToken refreshToken = refreshTokenRepository.save(RefreshToken.builder()
+                .familyId(familyId)
+                .userId(user.getId())
+                .expiresAt(jwtService.refreshTokenExpiration(issuedAt))
+                .status(RefreshTokenStatus.ACTIVE)
+                .build());
+        afterCommit(() -> refreshTokenIndex.put(familyId, refreshToken.getId(), refreshToken.getExpiresAt()));
+        return jwtService.generateRefreshToken(user, issuedAt, refreshToken.getId(), familyId);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,142 @@
+package ua.mctv32.kpi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import ua.mctv32.kpi.dto.TokenIntrospectionResultDto;
+import ua.mctv32.kpi.exception.BadRequestException;
+import ua.mctv32.kpi.security.TokenStatus;
+import ua.mctv32.kpi.security.TokenVerification;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies batches of access tokens for gateways and sidecars through {@link JwtService#introspect}, with
+ * the same checks as {@link JwtService#verify}: revocation included, refresh tokens reported inactive.
+ * A batch is split into contiguous slices verified on a pool limited to the number of cores, the calling
+ * thread verifies the first slice itself. When the pool queue is full the remaining slices run on the
+ * caller as well, so a burst of batches slows down instead of failing.
+ */
+@Service
+public class TokenIntrospectionService {
+
+    private final JwtService jwtService;
+    private final ThreadPoolExecutor executor;
+    private final int parallelism;
+    private final int maxTokens;
+    private final int maxTokenLength;
+    private final int minSliceSize;
+
+    private final Timer batchTimer;
+    private final DistributionSummary batchSizeSummary;
+    private final Map<TokenStatus, Counter> tokenCounters = new EnumMap<>(TokenStatus.class);
+
+    public TokenIntrospectionService(JwtService jwtService,
+                                     @Value("${jwt.introspection.threads}") int threads,
+                                     @Value("${jwt.introspection.max-tokens}") int maxTokens,
+                                     @Value("${jwt.introspection.max-token-length}") int maxTokenLength,
+                                     @Value("${jwt.introspection.min-slice-size}") int minSliceSize,
+                                     MeterRegistry meterRegistry) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int poolSize = threads > 0 ? Math.min(threads, cores) : cores;
+
+        this.jwtService = jwtService;
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(poolSize * 4), new CustomizableThreadFactory("token-introspection-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.parallelism = poolSize;
+        this.maxTokens = maxTokens;
+        this.maxTokenLength = maxTokenLength;
+        this.minSliceSize = Math.max(1, minSliceSize);
+
+        this.batchTimer = Timer.builder("token.introspection")
+                .description("Time spent verifying an introspection batch")
+                .register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("token.introspection.batch.size")
+                .description("Tokens per introspection request")
+                .register(meterRegistry);
+        for (TokenStatus status : TokenStatus.values()) {
+            tokenCounters.put(status, Counter.builder("token.introspection.tokens")
+                    .tag("status", status.name().toLowerCase())
+                    .description("Introspected tokens by verification result")
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Returns one result per token, in the order of {@code tokens}. Tokens longer than
+     * {@code jwt.introspection.max-token-length} are reported as malformed without being parsed.
+     */
+    public List<TokenIntrospectionResultDto> introspect(List<String> tokens) {
+        if (tokens == null || tokens.isEmpty() || tokens.size() > maxTokens) {
+            throw new BadRequestException("Between 1 and " + maxTokens + " tokens are required");
+        }
+        long startedAt = System.nanoTime();
+        TokenIntrospectionResultDto[] results = new TokenIntrospectionResultDto[tokens.size()];
+
+        // slices small enough to keep every thread busy, large enough to pay off the hand-over
+        int sliceSize = Math.max(minSliceSize, (tokens.size() + parallelism - 1) / parallelism);
+        List<CompletableFuture<Void>> slices = new ArrayList<>();
+        for (int from = sliceSize; from < tokens.size(); from += sliceSize) {
+            int sliceFrom = from;
+            int sliceTo = Math.min(from + sliceSize, tokens.size());
+            slices.add(CompletableFuture.runAsync(() -> introspect(tokens, sliceFrom, sliceTo, results), executor));
+        }
+        introspect(tokens, 0, Math.min(sliceSize, tokens.size()), results);
+        try {
+            CompletableFuture.allOf(slices.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+
+        batchTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        batchSizeSummary.record(tokens.size());
+        return Arrays.asList(results);
+    }
+
+    private void introspect(List<String> tokens, int from, int to, TokenIntrospectionResultDto[] results) {
+        for (int i = from; i < to; i++) {
+            String token = tokens.get(i);
+            TokenVerification verification = token == null || token.length() > maxTokenLength
+                    ? TokenVerification.MALFORMED
+                    : jwtService.introspect(token);
+            tokenCounters.get(verification.status()).increment();
+            results[i] = toResult(verification);
+        }
+    }
+
+    private static TokenIntrospectionResultDto toResult(TokenVerification verification) {
+        if (!verification.isValid()) {
+            return TokenIntrospectionResultDto.builder()
+                    .active(false)
+                    .reason(verification.status())
+                    .build();
+        }
+        return TokenIntrospectionResultDto.builder()
+                .active(true)
+                .userId(verification.authentication().getId())
+                .roles(verification.authentication().getRole())
+                .expiresAt(Instant.ofEpochMilli(verification.expiresAtMillis()))
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
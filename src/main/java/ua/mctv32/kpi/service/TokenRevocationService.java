@@ -0,0 +1,202 @@
+package ua.mctv32.kpi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ua.mctv32.kpi.domain.RevokedToken;
+import ua.mctv32.kpi.repository.RevokedTokenRepository;
+import ua.mctv32.kpi.util.BloomFilter;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Keeps revoked access token ids until the tokens expire. The database holds the revocations,
+ * an in-process Bloom filter in front of it answers the common case of a token that was never
+ * revoked, so only revoked tokens and the rare false positive reach the database.
+ * <p>
+ * Bloom filters cannot forget keys: the filter is rebuilt from the database whenever expired
+ * revocations are purged. Revocations made by other instances arrive through
+ * {@link ClusterInvalidationService}, a periodic sync picks up any that were missed.
+ */
+@Slf4j
+@Service
+public class TokenRevocationService {
+
+    public static final String INVALIDATION_TOPIC = "revoked-tokens";
+
+    private static final Duration SYNC_OVERLAP = Duration.ofMinutes(1);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final Clock clock;
+    private final ClusterInvalidationService clusterInvalidationService;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+
+    private volatile BloomFilter filter;
+    private volatile BloomFilter rebuilding;
+    private volatile Instant lastSync;
+
+    private final Counter lookupCounter;
+    private final Counter falsePositiveCounter;
+
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository, Clock clock,
+                                  ClusterInvalidationService clusterInvalidationService,
+                                  @Value("${jwt.revocation.expected-insertions}") long expectedInsertions,
+                                  @Value("${jwt.revocation.false-positive-rate}") double falsePositiveRate,
+                                  MeterRegistry meterRegistry) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.clock = clock;
+        this.clusterInvalidationService = clusterInvalidationService;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = BloomFilter.create(expectedInsertions, falsePositiveRate);
+        this.lastSync = clock.instant();
+
+        this.lookupCounter = Counter.builder("jwt.revocation.lookups")
+                .description("Revocation checks that passed the Bloom filter and went to the database")
+                .register(meterRegistry);
+        this.falsePositiveCounter = Counter.builder("jwt.revocation.false.positives")
+                .description("Revocation checks where the Bloom filter matched a token that was not revoked")
+                .register(meterRegistry);
+        Gauge.builder("jwt.revocation.filter.memory", this, it -> it.filter.bitSize() / Byte.SIZE)
+                .description("Memory used by the revocation Bloom filter")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("jwt.revocation.filter.size", this, it -> it.filter.insertions())
+                .description("Revoked token ids held in the Bloom filter")
+                .register(meterRegistry);
+        Gauge.builder("jwt.revocation.filter.false.positive.rate", this, it -> it.filter.expectedFalsePositiveRate())
+                .description("Expected false positive rate of the revocation Bloom filter at its current size")
+                .register(meterRegistry);
+        clusterInvalidationService.subscribe(INVALIDATION_TOPIC, ids -> ids.forEach(it -> {
+            UUID id = parse(it);
+            if (id != null) {
+                add(id);
+            }
+        }), this::sync);
+    }
+
+    public void revoke(UUID tokenId, Instant expiresAt) {
+        if (!expiresAt.isAfter(clock.instant())) {
+            return;
+        }
+        try {
+            revokedTokenRepository.save(RevokedToken.builder()
+                    .id(tokenId)
+                    .expiresAt(expiresAt)
+                    .revokedAt(clock.instant())
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Token {} is already revoked", tokenId);
+        }
+        add(tokenId);
+        clusterInvalidationService.publish(INVALIDATION_TOPIC, tokenId);
+    }
+
+    public boolean isRevoked(String tokenId) {
+        UUID id = parse(tokenId);
+        if (id == null || !filter.mightContain(id.getMostSignificantBits(), id.getLeastSignificantBits())) {
+            return false;
+        }
+        lookupCounter.increment();
+        boolean revoked = revokedTokenRepository.existsById(id);
+        if (!revoked) {
+            falsePositiveCounter.increment();
+        }
+        return revoked;
+    }
+
+    /**
+     * Answers from the Bloom filter alone and never blocks: {@code false} means the token is not revoked,
+     * {@code true} needs to be confirmed with {@link #isRevoked(String)}.
+     */
+    public boolean mightBeRevoked(String tokenId) {
+        UUID id = parse(tokenId);
+        return id != null && filter.mightContain(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    private static UUID parse(String tokenId) {
+        if (tokenId == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(tokenId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        rebuild();
+        log.info("Loaded {} revoked tokens into the revocation filter", filter.insertions());
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.sync-interval-ms}")
+    public void sync() {
+        Instant now = clock.instant();
+        revokedTokenRepository.findIdsRevokedAfter(lastSync.minus(SYNC_OVERLAP)).forEach(this::add);
+        lastSync = now;
+    }
+
+    @Transactional
+    @Scheduled(fixedDelayString = "${jwt.revocation.cleanup-interval-ms}")
+    public void removeExpired() {
+        revokedTokenRepository.deleteExpired(clock.instant());
+        rebuild();
+    }
+
+    /**
+     * Loads the revocations that have not expired yet into a fresh filter. Revocations made while
+     * the rows are streamed are added to both filters so that none of them is lost on the swap.
+     */
+    private void rebuild() {
+        Instant now = clock.instant();
+        BloomFilter next = BloomFilter.create(expectedInsertions, falsePositiveRate);
+        rebuilding = next;
+        try (Stream<UUID> ids = revokedTokenRepository.streamIdsExpiringAfter(now)) {
+            ids.forEach(id -> put(next, id));
+            filter = next;
+        } finally {
+            rebuilding = null;
+        }
+        lastSync = now;
+        if (next.insertions() > expectedInsertions) {
+            log.warn("{} revoked tokens exceed the expected {}, the false positive rate is now {}",
+                    next.insertions(), expectedInsertions, next.expectedFalsePositiveRate());
+        }
+    }
+
+    private void add(UUID id) {
+        BloomFilter current = filter;
+        put(current, id);
+        BloomFilter next = rebuilding;
+        if (next != null) {
+            put(next, id);
+        }
+        // the filter was swapped in between and the rebuild may not have seen this id
+        if (filter != current) {
+            put(filter, id);
+        }
+    }
+
+    private static void put(BloomFilter filter, UUID id) {
+        // syncs overlap, skipping known ids keeps the insertion count and the reported rate honest
+        if (!filter.mightContain(id.getMostSignificantBits(), id.getLeastSignificantBits())) {
+            filter.put(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        }
+    }
+}
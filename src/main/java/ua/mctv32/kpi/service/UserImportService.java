@@ -0,0 +1,316 @@
+package ua.mctv32.kpi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ua.mctv32.kpi.domain.Role;
+import ua.mctv32.kpi.domain.User;
+import ua.mctv32.kpi.dto.UserImportErrorDto;
+import ua.mctv32.kpi.dto.UserImportReportDto;
+import ua.mctv32.kpi.dto.UserImportRowDto;
+import ua.mctv32.kpi.repository.UserRepository;
+import ua.mctv32.kpi.security.RoleAuthorities;
+import ua.mctv32.kpi.util.Emails;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports users from NDJSON or CSV input line by line. Passwords of a batch are hashed in parallel
+ * while the previous batch is inserted, every batch is written in its own transaction with
+ * Hibernate JDBC batching. Invalid rows are reported and skipped, they do not abort the import.
+ * <p>
+ * Hashing runs on its own pool so that an import cannot fill the login hashing queue.
+ */
+@Slf4j
+@Service
+public class UserImportService {
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    // BCrypt only uses the first 72 bytes of a password, the encoder rejects longer ones
+    private static final int MAX_PASSWORD_BYTES = 72;
+
+    private final UserRepository userRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor hashingExecutor;
+    private final int batchSize;
+    private final int maxReportedErrors;
+
+    private final Counter importedCounter;
+    private final Counter failedCounter;
+
+    public UserImportService(UserRepository userRepository, PasswordEncoder passwordEncoder,
+                             PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+                             @Value("${users.import.hashing-threads}") int hashingThreads,
+                             @Value("${users.import.batch-size}") int batchSize,
+                             @Value("${users.import.max-reported-errors}") int maxReportedErrors,
+                             MeterRegistry meterRegistry) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int poolSize = hashingThreads > 0 ? Math.min(hashingThreads, cores) : cores;
+
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        // room for the batch being hashed and the one being inserted, concurrent imports hash on the caller
+        this.hashingExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(batchSize * 2), new CustomizableThreadFactory("user-import-hashing-"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+
+        this.importedCounter = Counter.builder("users.import.rows")
+                .tag("result", "imported")
+                .description("Imported user rows")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("users.import.rows")
+                .tag("result", "failed")
+                .description("User rows rejected by the import")
+                .register(meterRegistry);
+    }
+
+    public UserImportReportDto importUsers(InputStream input, Format format) throws IOException {
+        long startedAt = System.nanoTime();
+        Report report = new Report();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            Batch inserting = null;
+            List<Row> rows = new ArrayList<>(batchSize);
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || format == Format.CSV && lineNumber == 1 && isCsvHeader(line)) {
+                    continue;
+                }
+                try {
+                    rows.add(parse(line, format, lineNumber));
+                } catch (IllegalArgumentException e) {
+                    report.fail(lineNumber, e.getMessage());
+                }
+                if (rows.size() == batchSize) {
+                    Batch hashing = hash(rows);
+                    if (inserting != null) {
+                        insert(inserting, report);
+                    }
+                    inserting = hashing;
+                    rows = new ArrayList<>(batchSize);
+                }
+            }
+            Batch last = rows.isEmpty() ? null : hash(rows);
+            if (inserting != null) {
+                insert(inserting, report);
+            }
+            if (last != null) {
+                insert(last, report);
+            }
+        }
+
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        double usersPerSecond = durationMs == 0 ? report.imported : report.imported * 1000.0 / durationMs;
+        log.info("Imported {} users in {} ms ({} users/s), {} rows failed",
+                report.imported, durationMs, Math.round(usersPerSecond), report.failed);
+        report.errors.sort(Comparator.comparingLong(UserImportErrorDto::getLine));
+        return UserImportReportDto.builder()
+                .imported(report.imported)
+                .failed(report.failed)
+                .durationMs(durationMs)
+                .usersPerSecond(usersPerSecond)
+                .errors(report.errors)
+                .build();
+    }
+
+    private Batch hash(List<Row> rows) {
+        List<CompletableFuture<String>> passwords = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            passwords.add(CompletableFuture.supplyAsync(() -> passwordEncoder.encode(row.password()), hashingExecutor));
+        }
+        return new Batch(rows, passwords);
+    }
+
+    private void insert(Batch batch, Report report) {
+        List<String> emails = batch.rows().stream().map(Row::email).toList();
+        Set<String> taken = new HashSet<>(userRepository.findExistingEmails(emails));
+
+        List<User> users = new ArrayList<>(batch.rows().size());
+        List<Row> inserted = new ArrayList<>(batch.rows().size());
+        for (int i = 0; i < batch.rows().size(); i++) {
+            Row row = batch.rows().get(i);
+            String password;
+            try {
+                password = batch.passwords().get(i).join();
+            } catch (CompletionException e) {
+                log.warn("Failed to hash the password of line {}", row.line(), e.getCause());
+                report.fail(row.line(), "Password hashing failed");
+                continue;
+            }
+            if (!taken.add(row.email())) {
+                report.fail(row.line(), "Email already exists");
+                continue;
+            }
+            users.add(User.builder()
+                    .email(row.email())
+                    .password(password)
+                    .roles(row.roles())
+                    .build());
+            inserted.add(row);
+        }
+        if (users.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> userRepository.saveAll(users));
+            report.imported(users.size());
+        } catch (DataAccessException e) {
+            log.warn("Failed to insert a batch of {} users", users.size(), e);
+            for (Row row : inserted) {
+                report.fail(row.line(), "Insert failed: " + e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    private Row parse(String line, Format format, long lineNumber) {
+        UserImportRowDto dto = format == Format.NDJSON ? parseJson(line) : parseCsv(line);
+        if (dto.getEmail() == null || dto.getEmail().isBlank() || dto.getEmail().indexOf('@') < 1) {
+            throw new IllegalArgumentException("Invalid email");
+        }
+        if (dto.getPassword() == null || dto.getPassword().isEmpty()) {
+            throw new IllegalArgumentException("Password is required");
+        }
+        if (dto.getPassword().getBytes(StandardCharsets.UTF_8).length > MAX_PASSWORD_BYTES) {
+            throw new IllegalArgumentException("Password is longer than " + MAX_PASSWORD_BYTES + " bytes");
+        }
+        Set<Role> roles = EnumSet.noneOf(Role.class);
+        if (dto.getRoles() != null) {
+            for (String name : dto.getRoles()) {
+                Role role = RoleAuthorities.roleOf(name);
+                if (role == null) {
+                    throw new IllegalArgumentException("Unknown role " + name);
+                }
+                roles.add(role);
+            }
+        }
+        if (roles.isEmpty()) {
+            roles.add(Role.ROLE_USER);
+        }
+        return new Row(lineNumber, Emails.normalize(dto.getEmail()), dto.getPassword(), roles);
+    }
+
+    private UserImportRowDto parseJson(String line) {
+        try {
+            return objectMapper.readValue(line, UserImportRowDto.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON");
+        }
+    }
+
+    /**
+     * {@code email,password[,roles]} with roles separated by {@code |}; fields may be quoted.
+     */
+    private static UserImportRowDto parseCsv(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() < 2 || fields.size() > 3) {
+            throw new IllegalArgumentException("Expected email,password[,roles]");
+        }
+        List<String> roles = fields.size() == 3 && !fields.get(2).isBlank()
+                ? List.of(fields.get(2).trim().split("\\s*\\|\\s*"))
+                : null;
+        return new UserImportRowDto(fields.get(0), fields.get(1), roles);
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static boolean isCsvHeader(String line) {
+        return line.regionMatches(true, 0, "email,", 0, "email,".length());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingExecutor.shutdown();
+    }
+
+    private record Row(long line, String email, String password, Set<Role> roles) {
+    }
+
+    private record Batch(List<Row> rows, List<CompletableFuture<String>> passwords) {
+    }
+
+    private final class Report {
+
+        private final List<UserImportErrorDto> errors = new ArrayList<>();
+        private long imported;
+        private long failed;
+
+        private void imported(int count) {
+            imported += count;
+            importedCounter.increment(count);
+        }
+
+        private void fail(long line, String message) {
+            failed++;
+            failedCounter.increment();
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new UserImportErrorDto(line, message));
+            }
+        }
+    }
+}
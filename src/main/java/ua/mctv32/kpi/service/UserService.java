@@ -1,26 +1,219 @@
 package ua.mctv32.kpi.service;
 
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ua.mctv32.kpi.domain.User;
+import ua.mctv32.kpi.dto.UserDto;
+import ua.mctv32.kpi.dto.UserPageDto;
+import ua.mctv32.kpi.exception.BadRequestException;
 import ua.mctv32.kpi.exception.NotFoundException;
+import ua.mctv32.kpi.repository.UserExportRepository;
 import ua.mctv32.kpi.repository.UserRepository;
+import ua.mctv32.kpi.util.Emails;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Looks users up through a read-through cache of {@link UserDto} keyed by id. Entries are invalidated
+ * when the user is saved through this service, on every instance through {@link ClusterInvalidationService},
+ * and otherwise live for at most the configured TTL.
+ * <p>
+ * Misses are loaded by the calling thread after the cache has registered its pending entry, not inside the
+ * cache's map lock: a load waits for a pooled connection, and a virtual thread blocking in a
+ * {@code synchronized} bin would pin its carrier and stall every other miss of the bin. Concurrent misses
+ * of an id wait for the first one's load.
+ */
 @Service
-@RequiredArgsConstructor
 public class UserService {
 
+    public static final String CACHE_METRIC_NAME = "users";
+    public static final String INVALIDATION_TOPIC = "users";
+
     private final UserRepository userRepository;
+    private final UserExportRepository userExportRepository;
+    private final ClusterInvalidationService clusterInvalidationService;
+    private final AsyncCache<Long, UserDto> usersById;
+    private final int batchMaxSize;
+    private final int batchChunkSize;
+    private final int pageDefaultSize;
+    private final int pageMaxSize;
+
+    public UserService(UserRepository userRepository, UserExportRepository userExportRepository,
+                       ClusterInvalidationService clusterInvalidationService,
+                       @Value("${users.cache.max-size}") long maxSize,
+                       @Value("${users.cache.ttl-ms}") long ttlMs,
+                       @Value("${users.batch.max-size}") int batchMaxSize,
+                       @Value("${users.batch.chunk-size}") int batchChunkSize,
+                       @Value("${users.page.default-size}") int pageDefaultSize,
+                       @Value("${users.page.max-size}") int pageMaxSize,
+                       MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.userExportRepository = userExportRepository;
+        this.clusterInvalidationService = clusterInvalidationService;
+        this.batchMaxSize = batchMaxSize;
+        this.batchChunkSize = batchChunkSize;
+        this.pageDefaultSize = pageDefaultSize;
+        this.pageMaxSize = pageMaxSize;
+        this.usersById = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, usersById, CACHE_METRIC_NAME);
+        clusterInvalidationService.subscribe(INVALIDATION_TOPIC,
+                ids -> usersById.synchronous().invalidateAll(ids.stream().map(Long::valueOf).toList()),
+                usersById.synchronous()::invalidateAll);
+    }
+
+    public UserDto findById(Long id) {
+        CompletableFuture<UserDto> loading = new CompletableFuture<>();
+        CompletableFuture<UserDto> user = usersById.get(id, (key, executor) -> loading);
+        if (user == loading) {
+            load(id, loading);
+        }
+        UserDto found;
+        try {
+            found = user.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        if (found == null) {
+            throw new NotFoundException("User not found");
+        }
+        return found;
+    }
+
+    /**
+     * A {@code null} or failed result removes the entry, the next call loads again.
+     */
+    private void load(Long id, CompletableFuture<UserDto> loading) {
+        try {
+            loading.complete(userRepository.findDtoById(id).orElse(null));
+        } catch (RuntimeException e) {
+            loading.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Cached users among {@code ids}, for callers that load the rest on their own and hand them to
+     * {@link #cache(UserDto)}. A put may race with the invalidation of a concurrent save, the TTL bounds
+     * how long such an entry stays stale.
+     */
+    public Map<Long, UserDto> findCached(Collection<Long> ids) {
+        return usersById.synchronous().getAllPresent(ids);
+    }
+
+    public void cache(UserDto user) {
+        usersById.synchronous().put(user.getId(), user);
+    }
+
+    public int getBatchChunkSize() {
+        return batchChunkSize;
+    }
+
+    public void checkBatchSize(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty() || ids.size() > batchMaxSize) {
+            throw new BadRequestException("Between 1 and " + batchMaxSize + " user ids are required");
+        }
+    }
+
+    /**
+     * Passes the users found for {@code ids} to {@code consumer} chunk by chunk and returns the ids
+     * that do not exist. Cached users are served from memory, the rest of every chunk is loaded with
+     * a single {@code IN} query.
+     */
+    public List<Long> findAllByIds(Collection<Long> ids, Consumer<UserDto> consumer) {
+        checkBatchSize(ids);
+        List<Long> missing = new ArrayList<>();
+        List<Long> chunk = new ArrayList<>(batchChunkSize);
+        for (Long id : ids) {
+            chunk.add(id);
+            if (chunk.size() == batchChunkSize) {
+                findChunk(chunk, consumer, missing);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            findChunk(chunk, consumer, missing);
+        }
+        return missing;
+    }
+
+    private void findChunk(List<Long> ids, Consumer<UserDto> consumer, List<Long> missing) {
+        Map<Long, UserDto> cached = usersById.synchronous().getAllPresent(ids);
+        cached.values().forEach(consumer);
+
+        List<Long> toLoad = cached.isEmpty() ? ids : ids.stream().filter(id -> !cached.containsKey(id)).toList();
+        if (toLoad.isEmpty()) {
+            return;
+        }
+        Set<Long> found = new HashSet<>();
+        for (UserDto user : userRepository.findDtosByIds(toLoad)) {
+            found.add(user.getId());
+            consumer.accept(user);
+        }
+        for (Long id : toLoad) {
+            if (!found.contains(id)) {
+                missing.add(id);
+            }
+        }
+    }
+
+    /**
+     * Users with an id greater than {@code afterId} (all users when {@code null}), {@code users.page.default-size}
+     * of them unless {@code limit} is given. The page is read from the database, bypassing the cache.
+     */
+    public UserPageDto findPage(Long afterId, Integer limit) {
+        int size = checkPageSize(limit);
+        return toPage(userRepository.findDtosAfter(afterId == null ? Long.MIN_VALUE : afterId, size), size);
+    }
+
+    /**
+     * @return the page size for the requested {@code limit}
+     */
+    public int checkPageSize(Integer limit) {
+        int size = limit == null ? pageDefaultSize : limit;
+        if (size < 1 || size > pageMaxSize) {
+            throw new BadRequestException("Limit must be between 1 and " + pageMaxSize);
+        }
+        return size;
+    }
+
+    public static UserPageDto toPage(List<UserDto> users, int size) {
+        Long nextAfter = users.size() < size ? null : users.get(users.size() - 1).getId();
+        return new UserPageDto(users, nextAfter);
+    }
 
-    public User findById(Long id) {
-        return userRepository.findById(id).orElseThrow(() -> new NotFoundException("User not found"));
+    /**
+     * Passes every user to {@code consumer} in id order, straight from a database cursor.
+     */
+    public void exportAll(Consumer<UserDto> consumer) {
+        userExportRepository.streamAll(consumer);
     }
 
     public User findByEmail(String email) {
-        return userRepository.findByEmail(email).orElseThrow(() -> new NotFoundException("User not found"));
+        return userRepository.findByEmail(Emails.normalize(email)).orElseThrow(() -> new NotFoundException("User not found"));
     }
 
     public User save(User user) {
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        // runs after the repository transaction committed, a concurrent load either sees the new
+        // row or is discarded here
+        usersById.synchronous().invalidate(saved.getId());
+        clusterInvalidationService.publish(INVALIDATION_TOPIC, saved.getId());
+        return saved;
     }
 }
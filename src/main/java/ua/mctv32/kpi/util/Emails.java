@@ -0,0 +1,17 @@
+package ua.mctv32.kpi.util;
+
+import java.util.Locale;
+
+/**
+ * Emails are stored and looked up in one canonical form so that the unique index of
+ * {@code users.email} matches regardless of how the address was typed.
+ */
+public final class Emails {
+
+    private Emails() {
+    }
+
+    public static String normalize(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,97 @@
+package ua.mctv32.kpi.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer. Every slot carries a sequence number
+ * telling whether it is free for the producer of a given position or filled for the consumer, so a producer
+ * claims a position with one CAS and never waits for the others; a full buffer rejects the element.
+ */
+public final class RingBuffer<E> {
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity rounded up to the next power of two
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30, was " + capacity);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        this.elements = new AtomicReferenceArray<>(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return {@code false} when the buffer is full
+     */
+    public boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.getAcquire(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.setPlain(index, element);
+                    sequences.setRelease(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // the slot still holds the element of the previous lap
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Passes up to {@code limit} elements to {@code consumer} in the order they were offered.
+     * Must only be called by one thread at a time.
+     *
+     * @return the number of elements drained
+     */
+    public int drainTo(Consumer<? super E> consumer, int limit) {
+        long position = head.getPlain();
+        int drained = 0;
+        while (drained < limit) {
+            int index = (int) position & mask;
+            if (sequences.getAcquire(index) != position + 1) {
+                break;
+            }
+            E element = elements.getPlain(index);
+            elements.setPlain(index, null);
+            sequences.setRelease(index, position + mask + 1);
+            position++;
+            drained++;
+            consumer.accept(element);
+        }
+        head.setRelease(position);
+        return drained;
+    }
+
+    /**
+     * Approximate number of elements, exact when no producer or consumer is running.
+     */
+    public int size() {
+        long size = tail.get() - head.getAcquire();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
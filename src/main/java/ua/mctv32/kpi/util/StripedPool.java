@@ -0,0 +1,57 @@
+package ua.mctv32.kpi.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Small lock-free pool of reusable, non thread-safe instances (MACs, digests).
+ * Unlike a {@link ThreadLocal} it keeps the number of instances bounded when requests
+ * run on short-lived virtual threads. Acquiring from an empty pool creates a new instance,
+ * releasing into a full pool drops it.
+ */
+public final class StripedPool<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final Supplier<T> factory;
+
+    public StripedPool(Supplier<T> factory) {
+        this(factory, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public StripedPool(Supplier<T> factory, int size) {
+        int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.factory = factory;
+    }
+
+    public T acquire() {
+        int start = probe();
+        for (int i = 0; i <= mask; i++) {
+            int index = (start + i) & mask;
+            if (slots.get(index) != null) {
+                T instance = slots.getAndSet(index, null);
+                if (instance != null) {
+                    return instance;
+                }
+            }
+        }
+        return factory.get();
+    }
+
+    public void release(T instance) {
+        int start = probe();
+        for (int i = 0; i <= mask; i++) {
+            int index = (start + i) & mask;
+            if (slots.get(index) == null && slots.compareAndSet(index, null, instance)) {
+                return;
+            }
+        }
+    }
+
+    private static int probe() {
+        long id = Thread.currentThread().threadId();
+        return (int) (id ^ (id >>> 16)) * 0x9E3779B9;
+    }
+}
@@ -0,0 +1,44 @@
+-- Emails are stored lower-cased (see User#normalizeEmail), the unique constraint is the index of the login lookup.
+create sequence users_seq start with 1 increment by 50;
+
+create table users
+(
+    id       bigint       not null,
+    email    varchar(255) not null,
+    password varchar(255) not null,
+    constraint pk_users primary key (id),
+    constraint uk_users_email unique (email),
+    constraint ck_users_email_normalized check (email = lower(email))
+);
+
+-- the primary key leads with user_id and serves as the index for loading the roles of a user
+create table user_roles
+(
+    user_id bigint      not null,
+    role    varchar(32) not null,
+    constraint pk_user_roles primary key (user_id, role),
+    constraint fk_user_roles_user_id foreign key (user_id) references users (id) on delete cascade
+);
+
+create table refresh_tokens
+(
+    id         uuid                        not null,
+    family_id  uuid                        not null,
+    user_id    bigint                      not null,
+    expires_at timestamp(6) with time zone not null,
+    status     varchar(16)                 not null,
+    constraint pk_refresh_tokens primary key (id),
+    constraint fk_refresh_tokens_user_id foreign key (user_id) references users (id) on delete cascade
+);
+
+create index idx_refresh_tokens_family_id on refresh_tokens (family_id);
+
+create table revoked_tokens
+(
+    id         uuid                        not null,
+    expires_at timestamp(6) with time zone not null,
+    revoked_at timestamp(6) with time zone not null,
+    constraint pk_revoked_tokens primary key (id)
+);
+
+create index idx_revoked_tokens_revoked_at on revoked_tokens (revoked_at);
@@ -0,0 +1,13 @@
+-- Written in batches by AuditLogService. No foreign key to users: failed logins may name unknown emails
+-- and the trail has to outlive deleted users.
+create table audit_events
+(
+    id          bigint generated by default as identity,
+    occurred_at timestamp(6) with time zone not null,
+    type        varchar(32)                 not null,
+    user_id     bigint,
+    email       varchar(255),
+    constraint pk_audit_events primary key (id)
+);
+
+create index idx_audit_events_occurred_at on audit_events (occurred_at);
@@ -0,0 +1,65 @@
+package ua.mctv32.kpi.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import ua.mctv32.kpi.domain.Role;
+import ua.mctv32.kpi.domain.User;
+import ua.mctv32.kpi.dto.UserDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "users.export.fetch-size=2")
+@Import(UserExportRepository.class)
+class UserExportRepositoryTest {
+
+    @Autowired
+    private UserExportRepository userExportRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void givenUsersSpanningSeveralFetches_whenStreamAll_thenFoldsRolesIntoOneUserEachInIdOrder() {
+        // GIVEN
+        Long first = persistUser("first@example.com", Set.of(Role.ROLE_USER, Role.ROLE_ADMIN));
+        Long second = persistUser("second@example.com", Set.of());
+        Long third = persistUser("third@example.com", Set.of(Role.ROLE_USER));
+        List<UserDto> users = new ArrayList<>();
+
+        // WHEN
+        userExportRepository.streamAll(users::add);
+
+        // THEN
+        assertEquals(List.of(
+                new UserDto(first, "first@example.com", Set.of(Role.ROLE_USER, Role.ROLE_ADMIN)),
+                new UserDto(second, "second@example.com", Set.of()),
+                new UserDto(third, "third@example.com", Set.of(Role.ROLE_USER))), users);
+    }
+
+    @Test
+    void givenNoUsers_whenStreamAll_thenPassesNothing() {
+        // GIVEN
+        List<UserDto> users = new ArrayList<>();
+
+        // WHEN
+        userExportRepository.streamAll(users::add);
+
+        // THEN
+        assertTrue(users.isEmpty());
+    }
+
+    private Long persistUser(String email, Set<Role> roles) {
+        return entityManager.persistAndFlush(User.builder()
+                .email(email)
+                .password("encoded-password")
+                .roles(roles)
+                .build()).getId();
+    }
+}
@@ -0,0 +1,154 @@
+package ua.mctv32.kpi.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import ua.mctv32.kpi.domain.Role;
+import ua.mctv32.kpi.domain.User;
+import ua.mctv32.kpi.dto.UserDto;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class UserRepositoryTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void givenUserWithRoles_whenFindDtoById_thenLoadsUserWithSingleStatement() {
+        // GIVEN
+        Long id = persistUser(Set.of(Role.ROLE_USER, Role.ROLE_ADMIN));
+        statistics.clear();
+
+        // WHEN
+        Optional<UserDto> user = userRepository.findDtoById(id);
+
+        // THEN
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(new UserDto(id, "test@example.com", Set.of(Role.ROLE_USER, Role.ROLE_ADMIN)), user.orElseThrow());
+    }
+
+    @Test
+    void givenUserWithoutRoles_whenFindDtoById_thenReturnsEmptyRoles() {
+        // GIVEN
+        Long id = persistUser(Set.of());
+
+        // WHEN
+        Optional<UserDto> user = userRepository.findDtoById(id);
+
+        // THEN
+        assertEquals(Set.of(), user.orElseThrow().getRoles());
+    }
+
+    @Test
+    void givenUserEntity_whenFindByEmail_thenNeedsSeparateRolesStatement() {
+        // GIVEN
+        persistUser(Set.of(Role.ROLE_USER));
+        statistics.clear();
+
+        // WHEN
+        userRepository.findByEmail("test@example.com");
+
+        // THEN
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void givenSeveralUsers_whenFindDtosByIds_thenLoadsExistingUsersWithSingleStatement() {
+        // GIVEN
+        Long first = persistUser("first@example.com", Set.of(Role.ROLE_USER, Role.ROLE_ADMIN));
+        Long second = persistUser("second@example.com", Set.of());
+        statistics.clear();
+
+        // WHEN
+        List<UserDto> users = userRepository.findDtosByIds(List.of(second, first, -1L));
+
+        // THEN
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(List.of(
+                new UserDto(first, "first@example.com", Set.of(Role.ROLE_USER, Role.ROLE_ADMIN)),
+                new UserDto(second, "second@example.com", Set.of())), users);
+    }
+
+    @Test
+    void givenSeveralUsers_whenFindDtosAfter_thenPagesByIdWithAllRoles() {
+        // GIVEN
+        Long first = persistUser("first@example.com", Set.of(Role.ROLE_USER, Role.ROLE_ADMIN));
+        Long second = persistUser("second@example.com", Set.of());
+        Long third = persistUser("third@example.com", Set.of(Role.ROLE_USER));
+
+        // WHEN
+        List<UserDto> firstPage = userRepository.findDtosAfter(Long.MIN_VALUE, 2);
+        List<UserDto> secondPage = userRepository.findDtosAfter(second, 2);
+
+        // THEN
+        assertEquals(List.of(
+                new UserDto(first, "first@example.com", Set.of(Role.ROLE_USER, Role.ROLE_ADMIN)),
+                new UserDto(second, "second@example.com", Set.of())), firstPage);
+        assertEquals(List.of(new UserDto(third, "third@example.com", Set.of(Role.ROLE_USER))), secondPage);
+    }
+
+    @Test
+    void givenMixedCaseEmail_whenSave_thenStoresNormalizedEmailAndRejectsCaseVariants() {
+        // GIVEN
+        persistUser(" Test@Example.COM", Set.of(Role.ROLE_USER));
+
+        // WHEN / THEN
+        assertTrue(userRepository.findByEmail("test@example.com").isPresent());
+        assertThrows(DataIntegrityViolationException.class, () -> userRepository.saveAndFlush(User.builder()
+                .email("TEST@example.com")
+                .password("encoded-password")
+                .roles(Set.of())
+                .build()));
+    }
+
+    @Test
+    void givenEmailLookup_whenExplain_thenUsesUniqueEmailIndex() {
+        // WHEN
+        String plan = (String) entityManager.getEntityManager()
+                .createNativeQuery("explain select id, email, password from users where email = 'test@example.com'")
+                .getSingleResult();
+
+        // THEN
+        assertTrue(plan.toUpperCase().contains("UK_USERS_EMAIL"), plan);
+    }
+
+    private Long persistUser(Set<Role> roles) {
+        return persistUser("test@example.com", roles);
+    }
+
+    private Long persistUser(String email, Set<Role> roles) {
+        User user = entityManager.persistAndFlush(User.builder()
+                .email(email)
+                .password("encoded-password")
+                .roles(roles)
+                .build());
+        entityManager.clear();
+        return user.getId();
+    }
+}
@@ -0,0 +1,64 @@
+package ua.mctv32.kpi.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CalibratedBCryptPasswordEncoderTest {
+
+    @Test
+    void givenTargetBelowMinimumStrength_whenCalibrate_thenUsesMinimumStrength() {
+        // WHEN
+        CalibratedBCryptPasswordEncoder passwordEncoder =
+                CalibratedBCryptPasswordEncoder.calibrate(Duration.ofNanos(1), 4, 6);
+
+        // THEN
+        assertEquals(4, passwordEncoder.getStrength());
+        assertTrue(passwordEncoder.encode("raw-password").startsWith("$2a$04$"));
+    }
+
+    @Test
+    void givenBaseHashTimes_whenStrength_thenPicksHighestCostWithinTarget() {
+        // GIVEN
+        Duration target = Duration.ofMillis(100);
+
+        // WHEN / THEN
+        // a cost-10 hash of about 70 ms used to round up to 11 on some instances and stay at 10 on others
+        assertEquals(10, CalibratedBCryptPasswordEncoder.strength(steps(66, target), 10, 14));
+        assertEquals(10, CalibratedBCryptPasswordEncoder.strength(steps(74, target), 10, 14));
+        assertEquals(11, CalibratedBCryptPasswordEncoder.strength(steps(45, target), 10, 14));
+        assertEquals(14, CalibratedBCryptPasswordEncoder.strength(steps(1, target), 10, 14));
+        assertEquals(10, CalibratedBCryptPasswordEncoder.strength(steps(500, target), 10, 14));
+    }
+
+    @Test
+    void givenBaseHashTimeCloseToCostStep_whenIsNearStep_thenReportsIt() {
+        // GIVEN
+        Duration target = Duration.ofMillis(100);
+
+        // WHEN / THEN
+        assertFalse(CalibratedBCryptPasswordEncoder.isNearStep(steps(70, target), 10, 14));
+        assertTrue(CalibratedBCryptPasswordEncoder.isNearStep(steps(52, target), 10, 14));
+        assertTrue(CalibratedBCryptPasswordEncoder.isNearStep(steps(48, target), 10, 14));
+        // clamped to the minimum either way
+        assertFalse(CalibratedBCryptPasswordEncoder.isNearStep(steps(105, target), 10, 14));
+    }
+
+    @Test
+    void givenHashesWithOtherCosts_whenUpgradeEncoding_thenRequestsRehashInBothDirections() {
+        // GIVEN
+        CalibratedBCryptPasswordEncoder passwordEncoder = CalibratedBCryptPasswordEncoder.withStrength(5);
+
+        // WHEN / THEN
+        assertTrue(passwordEncoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("raw-password")));
+        assertTrue(passwordEncoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("raw-password")));
+        assertFalse(passwordEncoder.upgradeEncoding(passwordEncoder.encode("raw-password")));
+    }
+
+    private static double steps(long baseMs, Duration target) {
+        return CalibratedBCryptPasswordEncoder.steps(Duration.ofMillis(baseMs), target);
+    }
+}
@@ -0,0 +1,133 @@
+package ua.mctv32.kpi.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // every released request closes a window
+    private ConcurrencyLimiter limiter(int initialLimit) {
+        return new ConcurrencyLimiter(true, initialLimit, 2, 100, 1.5, 1.0, 0, 1, 0.8, 0.5, meterRegistry);
+    }
+
+    @Test
+    void givenRequestsInFlight_whenTryAcquire_thenShedsLowBeforeNormalBeforeHigh() {
+        // GIVEN
+        ConcurrencyLimiter limiter = limiter(10);
+
+        // WHEN
+        int low = acquireAll(limiter, ConcurrencyLimiter.Priority.LOW);
+        int normal = acquireAll(limiter, ConcurrencyLimiter.Priority.NORMAL);
+        int high = acquireAll(limiter, ConcurrencyLimiter.Priority.HIGH);
+
+        // THEN
+        assertEquals(5, low);
+        assertEquals(3, normal);
+        assertEquals(2, high);
+        assertEquals(10, limiter.getInFlight());
+        assertEquals(1, meterRegistry.get("concurrency.limit.requests")
+                .tags("priority", "low", "result", "shed").counter().count());
+    }
+
+    @Test
+    void givenLatencyRisingUnderLoad_whenRelease_thenShrinksTheLimit() {
+        // GIVEN
+        ConcurrencyLimiter limiter = limiter(20);
+        cycle(limiter, 20, 1);
+        int steady = limiter.getLimit();
+
+        // WHEN
+        cycle(limiter, steady, 10);
+
+        // THEN
+        assertTrue(limiter.getLimit() < steady, limiter.getLimit() + " < " + steady);
+        assertTrue(limiter.getLimit() >= 2);
+    }
+
+    @Test
+    void givenSteadyLatencyWithLimitInUse_whenRelease_thenGrowsTheLimit() {
+        // GIVEN
+        ConcurrencyLimiter limiter = limiter(20);
+
+        // WHEN
+        for (int i = 0; i < 5; i++) {
+            cycle(limiter, limiter.getLimit(), 1);
+        }
+
+        // THEN
+        assertTrue(limiter.getLimit() > 20, String.valueOf(limiter.getLimit()));
+    }
+
+    @Test
+    void givenSlowLowPriorityRequests_whenRelease_thenDoesNotShrinkTheLimit() {
+        // GIVEN
+        ConcurrencyLimiter limiter = limiter(20);
+        cycle(limiter, 20, 1);
+        int steady = limiter.getLimit();
+
+        // WHEN
+        for (int i = 0; i < 10; i++) {
+            // logins hashing passwords next to fast reads, completing while the reads are in flight
+            int logins = acquire(limiter, ConcurrencyLimiter.Priority.LOW, 10);
+            int reads = acquire(limiter, ConcurrencyLimiter.Priority.HIGH, 10);
+            for (int j = 0; j < logins; j++) {
+                limiter.release(ConcurrencyLimiter.Priority.LOW, TimeUnit.MILLISECONDS.toNanos(100));
+            }
+            for (int j = 0; j < reads; j++) {
+                limiter.release(ConcurrencyLimiter.Priority.HIGH, TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+
+        // THEN
+        assertTrue(limiter.getLimit() >= steady, limiter.getLimit() + " >= " + steady);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void givenLimitMostlyUnused_whenRelease_thenKeepsTheLimit() {
+        // GIVEN
+        ConcurrencyLimiter limiter = limiter(20);
+
+        // WHEN
+        for (int i = 0; i < 5; i++) {
+            cycle(limiter, 2, 1);
+        }
+
+        // THEN
+        assertEquals(20, limiter.getLimit());
+    }
+
+    private static int acquire(ConcurrencyLimiter limiter, ConcurrencyLimiter.Priority priority, int requests) {
+        int acquired = 0;
+        while (acquired < requests && limiter.tryAcquire(priority)) {
+            acquired++;
+        }
+        return acquired;
+    }
+
+    private static int acquireAll(ConcurrencyLimiter limiter, ConcurrencyLimiter.Priority priority) {
+        int acquired = 0;
+        while (limiter.tryAcquire(priority)) {
+            acquired++;
+        }
+        return acquired;
+    }
+
+    /**
+     * Takes {@code requests} permits at once and releases them with the given latency.
+     */
+    private static void cycle(ConcurrencyLimiter limiter, int requests, long latencyMs) {
+        for (int i = 0; i < requests; i++) {
+            assertTrue(limiter.tryAcquire(ConcurrencyLimiter.Priority.HIGH));
+        }
+        for (int i = 0; i < requests; i++) {
+            limiter.release(ConcurrencyLimiter.Priority.HIGH, TimeUnit.MILLISECONDS.toNanos(latencyMs));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package ua.mctv32.kpi.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.AlternativeJdkIdGenerator;
+import ua.mctv32.kpi.config.SecurityConfig;
+import ua.mctv32.kpi.controller.UserController;
+import ua.mctv32.kpi.domain.RefreshToken;
+import ua.mctv32.kpi.domain.Role;
+import ua.mctv32.kpi.domain.User;
+import ua.mctv32.kpi.dto.UserDto;
+import ua.mctv32.kpi.exception.AuthenticationException;
+import ua.mctv32.kpi.repository.RefreshTokenRepository;
+import ua.mctv32.kpi.service.JwtService;
+import ua.mctv32.kpi.service.RefreshTokenService;
+import ua.mctv32.kpi.service.TokenRevocationService;
+import ua.mctv32.kpi.service.UserImportService;
+import ua.mctv32.kpi.service.UserService;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(UserController.class)
+@Import({SecurityConfig.class, ConcurrencyLimiter.class, JwtAuthenticationFilterTest.Config.class})
+class JwtAuthenticationFilterTest {
+
+    private static final String SECRET = "12345678901234567890123456789012";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @MockitoBean
+    private UserService userService;
+
+    @MockitoBean
+    private UserImportService userImportService;
+
+    @MockitoBean
+    private TokenRevocationService tokenRevocationService;
+
+    @MockitoBean
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Test
+    void givenAccessToken_whenGetMe_thenRespondsWithUser() throws Exception {
+        // GIVEN
+        String accessToken = jwtService.generateAccessToken(buildTestUser());
+        when(userService.findById(1L)).thenReturn(new UserDto(1L, "test@example.com", Set.of(Role.ROLE_USER)));
+
+        // WHEN / THEN
+        mockMvc.perform(get("/users/me").header(JwtAuthenticationFilter.AUTH_HEADER, "Bearer " + accessToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1));
+    }
+
+    @Test
+    void givenRefreshToken_whenGetMe_thenRespondsUnauthorized() throws Exception {
+        // GIVEN
+        String refreshToken = jwtService.generateRefreshToken(buildTestUser(), Instant.now(), UUID.randomUUID(),
+                UUID.randomUUID());
+
+        // WHEN / THEN
+        for (int i = 0; i < 2; i++) {
+            // the second request would be served from the verified token cache
+            mockMvc.perform(get("/users/me").header(JwtAuthenticationFilter.AUTH_HEADER, "Bearer " + refreshToken))
+                    .andExpect(status().isUnauthorized());
+        }
+    }
+
+    @Test
+    void givenRefreshTokenOfRevokedFamily_whenGetMeAndRotate_thenRefusesBoth() throws Exception {
+        // GIVEN
+        RefreshTokenService refreshTokenService = new RefreshTokenService(jwtService, refreshTokenRepository,
+                new RefreshTokenIndex(new SimpleMeterRegistry()), Clock.systemUTC());
+        UUID tokenId = UUID.randomUUID();
+        when(refreshTokenRepository.save(any())).thenAnswer(invocation -> {
+            RefreshToken refreshToken = invocation.getArgument(0);
+            refreshToken.setId(tokenId);
+            return refreshToken;
+        });
+        User user = buildTestUser();
+        String refreshToken = refreshTokenService.issue(user);
+        TokenVerification verification = jwtService.verifyRefreshToken(refreshToken);
+        UUID familyId = UUID.fromString(verification.familyId());
+
+        // WHEN
+        refreshTokenService.revokeFamily(familyId);
+
+        // THEN
+        mockMvc.perform(get("/users/me").header(JwtAuthenticationFilter.AUTH_HEADER, "Bearer " + refreshToken))
+                .andExpect(status().isUnauthorized());
+        assertThrows(AuthenticationException.class, () -> refreshTokenService.rotate(user, tokenId, familyId));
+        verify(refreshTokenRepository, atLeastOnce()).revokeFamily(familyId);
+    }
+
+    private static User buildTestUser() {
+        return User.builder()
+                .id(1L)
+                .email("test@example.com")
+                .roles(Set.of(Role.ROLE_USER))
+                .build();
+    }
+
+    @TestConfiguration
+    static class Config {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        JwtService jwtService(ObjectMapper objectMapper, TokenRevocationService tokenRevocationService,
+                              MeterRegistry meterRegistry) {
+            Clock clock = Clock.systemUTC();
+            VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache(true, 100, clock, meterRegistry);
+            return new JwtService(new JwtKeySet(SECRET, new JwtSigningProperties(null, 0, List.of())),
+                    TimeUnit.MINUTES.toMillis(10), TimeUnit.DAYS.toMillis(30), JwtKey.COMPACT_FORMAT, objectMapper,
+                    clock, verifiedTokenCache, new AlternativeJdkIdGenerator(), tokenRevocationService, meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ua.mctv32.kpi.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtKeySetTest {
+
+    private static final String SECRET = "12345678901234567890123456789012";
+
+    @Test
+    void givenAsymmetricKeys_whenJwks_thenShouldPublishOnlyPublicKeys() throws Exception {
+        // GIVEN
+        KeyPair es256 = generateEs256();
+        KeyPair ed25519 = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        String ed25519Pem = "-----BEGIN PUBLIC KEY-----\n"
+                + Base64.getMimeEncoder().encodeToString(ed25519.getPublic().getEncoded())
+                + "\n-----END PUBLIC KEY-----\n";
+        JwtKeySet keySet = new JwtKeySet(SECRET, new JwtSigningProperties("k1", 300, List.of(
+                new JwtSigningProperties.Key("k1", "ES256", encode(es256.getPrivate().getEncoded()), encode(es256.getPublic().getEncoded())),
+                new JwtSigningProperties.Key("k2", "EdDSA", null, ed25519Pem))));
+
+        // WHEN
+        List<Map<String, ?>> jwks = keySet.jwks();
+
+        // THEN
+        assertEquals("k1", keySet.signingKey().getKid());
+        assertEquals(2, jwks.size());
+        assertEquals("k1", jwks.get(0).get("kid"));
+        assertEquals("EC", jwks.get(0).get("kty"));
+        assertEquals("P-256", jwks.get(0).get("crv"));
+        assertEquals("ES256", jwks.get(0).get("alg"));
+        assertFalse(jwks.get(0).containsKey("d"));
+        assertEquals("k2", jwks.get(1).get("kid"));
+        assertEquals("OKP", jwks.get(1).get("kty"));
+        assertEquals("Ed25519", jwks.get(1).get("crv"));
+    }
+
+    @Test
+    void givenNoActiveKid_whenSigningKey_thenShouldSignWithSecretAndPublishNothing() {
+        // WHEN
+        JwtKeySet keySet = new JwtKeySet(SECRET, new JwtSigningProperties("", 300, null));
+
+        // THEN
+        assertNull(keySet.signingKey().getKid());
+        assertEquals("HS256", keySet.signingKey().getAlgorithm());
+        assertTrue(keySet.jwks().isEmpty());
+    }
+
+    @Test
+    void givenMismatchedKeyPair_whenCreate_thenShouldFail() throws Exception {
+        // GIVEN
+        KeyPair first = generateEs256();
+        KeyPair second = generateEs256();
+        JwtSigningProperties properties = new JwtSigningProperties("k1", 300, List.of(new JwtSigningProperties.Key(
+                "k1", "ES256", encode(first.getPrivate().getEncoded()), encode(second.getPublic().getEncoded()))));
+
+        // WHEN / THEN
+        assertThrows(IllegalArgumentException.class, () -> new JwtKeySet(SECRET, properties));
+    }
+
+    @Test
+    void givenActiveKeyWithoutPrivateKey_whenCreate_thenShouldFail() throws Exception {
+        // GIVEN
+        KeyPair keyPair = generateEs256();
+        JwtSigningProperties properties = new JwtSigningProperties("k1", 300, List.of(
+                new JwtSigningProperties.Key("k1", "ES256", null, encode(keyPair.getPublic().getEncoded()))));
+
+        // WHEN / THEN
+        assertThrows(IllegalArgumentException.class, () -> new JwtKeySet(SECRET, properties));
+    }
+
+    private static KeyPair generateEs256() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return generator.generateKeyPair();
+    }
+
+    private static String encode(byte[] key) {
+        return Base64.getEncoder().encodeToString(key);
+    }
+}
@@ -0,0 +1,81 @@
+package ua.mctv32.kpi.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ua.mctv32.kpi.exception.TooManyRequestsException;
+
+import java.time.Clock;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LoginThrottleTest {
+
+    private static final Instant TIME = Instant.parse("2000-01-01T10:00:00Z");
+
+    @Mock
+    private Clock clock;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private LoginThrottle loginThrottle;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        loginThrottle = new LoginThrottle(true, 10, 1000, 3, 10_000, 100, 60_000, clock, meterRegistry);
+        when(clock.instant()).thenReturn(TIME);
+    }
+
+    @Test
+    void givenEmailBucketExhausted_whenAcquire_thenThrowsWithRetryAfterUntilNextToken() {
+        // GIVEN
+        for (int i = 0; i < 3; i++) {
+            loginThrottle.acquire("Test@Example.com", "10.0.0." + i);
+        }
+
+        // WHEN
+        TooManyRequestsException exception = assertThrows(TooManyRequestsException.class,
+                () -> loginThrottle.acquire("test@example.com", "10.0.0.9"));
+
+        // THEN
+        assertEquals(10, exception.getRetryAfterSeconds());
+        assertEquals(1, meterRegistry.get("login.throttle.requests")
+                .tag("scope", "email").tag("result", "throttled").counter().count());
+    }
+
+    @Test
+    void givenEmailBucketExhausted_whenRefillPeriodPassed_thenAllowsOneMoreAttempt() {
+        // GIVEN
+        for (int i = 0; i < 3; i++) {
+            loginThrottle.acquire("test@example.com", "10.0.0.1");
+        }
+        when(clock.instant()).thenReturn(TIME.plusMillis(10_000));
+
+        // WHEN / THEN
+        assertDoesNotThrow(() -> loginThrottle.acquire("test@example.com", "10.0.0.1"));
+        assertThrows(TooManyRequestsException.class, () -> loginThrottle.acquire("test@example.com", "10.0.0.1"));
+    }
+
+    @Test
+    void givenIpBucketExhausted_whenAcquireForOtherEmails_thenThrows() {
+        // GIVEN
+        for (int i = 0; i < 10; i++) {
+            loginThrottle.acquire("user" + i + "@example.com", "10.0.0.1");
+        }
+
+        // WHEN
+        TooManyRequestsException exception = assertThrows(TooManyRequestsException.class,
+                () -> loginThrottle.acquire("other@example.com", "10.0.0.1"));
+
+        // THEN
+        assertEquals(1, exception.getRetryAfterSeconds());
+        assertDoesNotThrow(() -> loginThrottle.acquire("other@example.com", "10.0.0.2"));
+    }
+}
@@ -0,0 +1,60 @@
+package ua.mctv32.kpi.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RefreshTokenIndexTest {
+
+    private static final Instant TIME = Instant.parse("2000-01-01T10:00:00Z");
+
+    private final RefreshTokenIndex refreshTokenIndex = new RefreshTokenIndex(new SimpleMeterRegistry());
+
+    @Test
+    void givenManyFamilies_whenPutAndRemove_thenOnlyRemainingFamiliesAreCurrent() {
+        // GIVEN
+        List<UUID> families = new ArrayList<>();
+        List<UUID> tokens = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            families.add(UUID.randomUUID());
+            tokens.add(UUID.randomUUID());
+            refreshTokenIndex.put(families.get(i), tokens.get(i), TIME.plusSeconds(3600));
+        }
+
+        // WHEN
+        for (int i = 0; i < families.size(); i += 2) {
+            refreshTokenIndex.remove(families.get(i));
+        }
+
+        // THEN
+        assertEquals(5_000, refreshTokenIndex.size());
+        for (int i = 0; i < families.size(); i++) {
+            assertEquals(i % 2 == 1, refreshTokenIndex.isCurrent(families.get(i), tokens.get(i)));
+        }
+    }
+
+    @Test
+    void givenExpiredFamilies_whenRemoveExpired_thenExpiredFamiliesAreRemoved() {
+        // GIVEN
+        UUID expiredFamily = UUID.randomUUID();
+        UUID expiredToken = UUID.randomUUID();
+        UUID activeFamily = UUID.randomUUID();
+        UUID activeToken = UUID.randomUUID();
+        refreshTokenIndex.put(expiredFamily, expiredToken, TIME.minusSeconds(120));
+        refreshTokenIndex.put(activeFamily, activeToken, TIME.plusSeconds(120));
+
+        // WHEN
+        int removed = refreshTokenIndex.removeExpired(TIME);
+
+        // THEN
+        assertEquals(1, removed);
+        assertFalse(refreshTokenIndex.isCurrent(expiredFamily, expiredToken));
+        assertTrue(refreshTokenIndex.isCurrent(activeFamily, activeToken));
+    }
+}
@@ -0,0 +1,157 @@
+package ua.mctv32.kpi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ua.mctv32.kpi.domain.AuditEvent;
+import ua.mctv32.kpi.domain.AuditEventType;
+import ua.mctv32.kpi.repository.AuditEventRepository;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class AuditLogServiceTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.ofEpochMilli(946720800000L), ZoneOffset.UTC);
+
+    @Mock
+    private AuditEventRepository auditEventRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private final List<List<AuditEvent>> batches = new ArrayList<>();
+
+    private AuditLogService auditLogService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // the service clears its batch after the insert
+        lenient().doAnswer(invocation -> {
+            synchronized (batches) {
+                batches.add(List.copyOf(invocation.<List<AuditEvent>>getArgument(0)));
+            }
+            return null;
+        }).when(auditEventRepository).insertAll(anyList());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        auditLogService.shutdown();
+    }
+
+    private AuditLogService auditLogService(int bufferSize, int batchSize, long flushIntervalMs) {
+        return new AuditLogService(auditEventRepository, CLOCK, true, bufferSize, batchSize, flushIntervalMs,
+                AuditLogService.FullBufferPolicy.DROP, 100, 5000, meterRegistry);
+    }
+
+    @Test
+    void givenFullBatch_whenPublish_thenWritesItBeforeTheFlushInterval() {
+        // GIVEN
+        auditLogService = auditLogService(64, 3, 60_000);
+        auditLogService.start();
+
+        // WHEN
+        auditLogService.publish(AuditEventType.LOGIN_SUCCESS, 1L, "test@example.com");
+        auditLogService.publish(AuditEventType.LOGIN_FAILURE, null, "other@example.com");
+        auditLogService.publish(AuditEventType.TOKEN_REFRESH, 1L, null);
+
+        // THEN
+        verify(auditEventRepository, timeout(5000)).insertAll(anyList());
+        assertEquals(List.of(List.of(
+                new AuditEvent(AuditEventType.LOGIN_SUCCESS, 1L, "test@example.com", 946720800000L),
+                new AuditEvent(AuditEventType.LOGIN_FAILURE, null, "other@example.com", 946720800000L),
+                new AuditEvent(AuditEventType.TOKEN_REFRESH, 1L, null, 946720800000L))), batches);
+    }
+
+    @Test
+    void givenPartialBatch_whenFlushIntervalPasses_thenWritesIt() {
+        // GIVEN
+        auditLogService = auditLogService(64, 100, 20);
+        auditLogService.start();
+
+        // WHEN
+        auditLogService.publish(AuditEventType.TOKEN_REFRESH_FAILURE, null, null);
+
+        // THEN
+        verify(auditEventRepository, timeout(5000)).insertAll(anyList());
+        assertEquals(1, batches.size());
+        assertEquals(1, meterRegistry.get("auth.audit.events").tag("result", "written").counter().count());
+    }
+
+    @Test
+    void givenFullBuffer_whenPublish_thenDropsAndCountsTheEvent() throws InterruptedException {
+        // GIVEN
+        auditLogService = auditLogService(2, 1, 60_000);
+        CountDownLatch inserting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            inserting.countDown();
+            release.await();
+            return null;
+        }).when(auditEventRepository).insertAll(anyList());
+        auditLogService.start();
+        auditLogService.publish(AuditEventType.LOGIN_SUCCESS, 1L, "test@example.com");
+        inserting.await();
+
+        // WHEN
+        for (int i = 0; i < 5; i++) {
+            auditLogService.publish(AuditEventType.LOGIN_SUCCESS, 1L, "test@example.com");
+        }
+        release.countDown();
+
+        // THEN
+        assertEquals(3, meterRegistry.get("auth.audit.events").tag("result", "dropped").counter().count());
+        auditLogService.shutdown();
+        assertEquals(3, meterRegistry.get("auth.audit.events").tag("result", "written").counter().count());
+    }
+
+    @Test
+    void givenBufferedEvents_whenShutdown_thenWritesThemAll() throws InterruptedException {
+        // GIVEN
+        auditLogService = auditLogService(1024, 100, 60_000);
+        auditLogService.start();
+        for (int i = 0; i < 250; i++) {
+            auditLogService.publish(AuditEventType.LOGIN_SUCCESS, (long) i, "test@example.com");
+        }
+
+        // WHEN
+        auditLogService.shutdown();
+
+        // THEN
+        assertEquals(250, batches.stream().mapToInt(List::size).sum());
+        assertEquals(250, meterRegistry.get("auth.audit.events").tag("result", "written").counter().count());
+    }
+
+    @Test
+    void givenDisabledAuditLog_whenPublish_thenWritesNothing() throws InterruptedException {
+        // GIVEN
+        auditLogService = new AuditLogService(auditEventRepository, CLOCK, false, 64, 3, 20,
+                AuditLogService.FullBufferPolicy.DROP, 100, 5000, meterRegistry);
+        auditLogService.start();
+
+        // WHEN
+        auditLogService.publish(AuditEventType.LOGIN_SUCCESS, 1L, "test@example.com");
+        auditLogService.shutdown();
+
+        // THEN
+        verify(auditEventRepository, never()).insertAll(anyList());
+    }
+}
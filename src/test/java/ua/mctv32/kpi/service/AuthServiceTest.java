@@ -1,27 +1,41 @@
 package ua.mctv32.kpi.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.core.task.SyncTaskExecutor;
+import ua.mctv32.kpi.domain.AuditEventType;
 import ua.mctv32.kpi.domain.Role;
 import ua.mctv32.kpi.domain.User;
 import ua.mctv32.kpi.dto.AuthResponseDto;
 import ua.mctv32.kpi.exception.AuthenticationException;
 import ua.mctv32.kpi.repository.UserRepository;
+import ua.mctv32.kpi.security.TokenVerification;
 import ua.mctv32.kpi.security.UserAuthentication;
 
+import java.time.Instant;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class AuthServiceTest {
 
+    private static final UUID TOKEN_ID = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID FAMILY_ID = UUID.fromString("00000000-0000-0000-0000-000000000002");
+
     @Mock
     private JwtService jwtService;
 
@@ -29,7 +43,22 @@ class AuthServiceTest {
     private UserRepository userRepository;
 
     @Mock
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
+    @Mock
+    private AuditLogService auditLogService;
+
+    @Spy
+    private Executor applicationTaskExecutor = new SyncTaskExecutor();
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @InjectMocks
     private AuthService authService;
@@ -39,17 +68,53 @@ class AuthServiceTest {
         // GIVEN
         User user = buildTestUser();
         when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
-        when(passwordEncoder.matches("raw-password", "encoded-password")).thenReturn(true);
+        when(passwordHashingService.matches("raw-password", "encoded-password"))
+                .thenReturn(CompletableFuture.completedFuture(true));
         when(jwtService.generateAccessToken(user)).thenReturn("access-token");
-        when(jwtService.generateRefreshToken(user)).thenReturn("refresh-token");
+        when(refreshTokenService.issue(user)).thenReturn("refresh-token");
 
         // WHEN
-        AuthResponseDto result = authService.login("test@example.com", "raw-password");
+        AuthResponseDto result = authService.login("test@example.com", "raw-password").join();
 
         // THEN
         assertNotNull(result);
         assertEquals("access-token", result.getAccessToken());
         assertEquals("refresh-token", result.getRefreshToken());
+        verify(auditLogService).publish(AuditEventType.LOGIN_SUCCESS, 1L, "test@example.com");
+    }
+
+    @Test
+    void givenMixedCaseEmail_whenLogin_thenLooksUpNormalizedEmail() {
+        // GIVEN
+        User user = buildTestUser();
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
+        when(passwordHashingService.matches("raw-password", "encoded-password"))
+                .thenReturn(CompletableFuture.completedFuture(true));
+        when(jwtService.generateAccessToken(user)).thenReturn("access-token");
+        when(refreshTokenService.issue(user)).thenReturn("refresh-token");
+
+        // WHEN
+        AuthResponseDto result = authService.login(" Test@Example.com", "raw-password").join();
+
+        // THEN
+        assertEquals("access-token", result.getAccessToken());
+    }
+
+    @Test
+    void givenPasswordHashedWithOutdatedCost_whenLogin_thenStoresRehashedPassword() {
+        // GIVEN
+        User user = buildTestUser();
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
+        when(passwordHashingService.matches("raw-password", "encoded-password"))
+                .thenReturn(CompletableFuture.completedFuture(true));
+        when(passwordHashingService.needsRehash("encoded-password")).thenReturn(true);
+        when(passwordHashingService.encode("raw-password")).thenReturn(CompletableFuture.completedFuture("rehashed-password"));
+
+        // WHEN
+        authService.login("test@example.com", "raw-password").join();
+
+        // THEN
+        verify(userRepository).updatePassword(1L, "encoded-password", "rehashed-password");
     }
 
     @Test
@@ -63,6 +128,7 @@ class AuthServiceTest {
                 () -> authService.login("notfound@example.com", "password")
         );
         assertEquals("Invalid email or password", exception.getMessage());
+        verify(auditLogService).publish(AuditEventType.LOGIN_FAILURE, null, "notfound@example.com");
     }
 
     @Test
@@ -70,14 +136,35 @@ class AuthServiceTest {
         // GIVEN
         User user = buildTestUser();
         when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
-        when(passwordEncoder.matches("wrong-password", "encoded-password")).thenReturn(false);
+        when(passwordHashingService.matches("wrong-password", "encoded-password"))
+                .thenReturn(CompletableFuture.completedFuture(false));
 
         // WHEN / THEN
-        AuthenticationException exception = assertThrows(
-                AuthenticationException.class,
-                () -> authService.login("test@example.com", "wrong-password")
+        CompletionException exception = assertThrows(
+                CompletionException.class,
+                () -> authService.login("test@example.com", "wrong-password").join()
         );
-        assertEquals("Invalid email or password", exception.getMessage());
+        assertInstanceOf(AuthenticationException.class, exception.getCause());
+        assertEquals("Invalid email or password", exception.getCause().getMessage());
+        verify(auditLogService).publish(AuditEventType.LOGIN_FAILURE, null, "test@example.com");
+    }
+
+    @Test
+    void givenInvalidPassword_whenLogin_thenRecordsFailureWithDatabaseAndPasswordPhases() {
+        // GIVEN
+        User user = buildTestUser();
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
+        when(passwordHashingService.matches("wrong-password", "encoded-password"))
+                .thenReturn(CompletableFuture.completedFuture(false));
+
+        // WHEN
+        assertThrows(CompletionException.class, () -> authService.login("test@example.com", "wrong-password").join());
+
+        // THEN
+        assertEquals(1, meterRegistry.get("auth.requests").tags("operation", "login", "outcome", "failure").timer().count());
+        assertEquals(0, meterRegistry.get("auth.requests").tags("operation", "login", "outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("auth.phase").tags("operation", "login", "phase", "database").timer().count());
+        assertEquals(1, meterRegistry.get("auth.phase").tags("operation", "login", "phase", "password").timer().count());
     }
 
     @Test
@@ -85,12 +172,10 @@ class AuthServiceTest {
         // GIVEN
         User user = buildTestUser();
         String refreshToken = "valid-refresh-token";
-        UserAuthentication userAuth = new UserAuthentication(1L, "test@example.com", Set.of(Role.ROLE_USER));
-
-        when(jwtService.toAuthentication(refreshToken)).thenReturn(Optional.of(userAuth));
+        when(jwtService.verifyRefreshToken(refreshToken)).thenReturn(buildRefreshTokenVerification());
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
         when(jwtService.generateAccessToken(user)).thenReturn("new-access-token");
-        when(jwtService.generateRefreshToken(user)).thenReturn("new-refresh-token");
+        when(refreshTokenService.rotate(user, TOKEN_ID, FAMILY_ID)).thenReturn("new-refresh-token");
 
         // WHEN
         AuthResponseDto result = authService.refreshTokens(refreshToken);
@@ -99,12 +184,13 @@ class AuthServiceTest {
         assertNotNull(result);
         assertEquals("new-access-token", result.getAccessToken());
         assertEquals("new-refresh-token", result.getRefreshToken());
+        verify(auditLogService).publish(AuditEventType.TOKEN_REFRESH, 1L, null);
     }
 
     @Test
     void givenInvalidRefreshToken_whenRefreshTokens_thenThrowsAuthenticationException() {
         // GIVEN
-        when(jwtService.toAuthentication("invalid-token")).thenReturn(Optional.empty());
+        when(jwtService.verifyRefreshToken("invalid-token")).thenReturn(TokenVerification.MALFORMED);
 
         // WHEN / THEN
         AuthenticationException exception = assertThrows(
@@ -112,15 +198,43 @@ class AuthServiceTest {
                 () -> authService.refreshTokens("invalid-token")
         );
         assertEquals("Invalid refresh token", exception.getMessage());
+        verify(auditLogService).publish(AuditEventType.TOKEN_REFRESH_FAILURE, null, null);
     }
 
     @Test
-    void givenValidAuthButUserNotFound_whenRefreshTokens_thenThrowsAuthenticationException() {
+    void givenNullRefreshToken_whenRefreshTokens_thenThrowsAuthenticationException() {
+        // GIVEN
+        when(jwtService.verifyRefreshToken(null)).thenReturn(TokenVerification.MALFORMED);
+
+        // WHEN / THEN
+        AuthenticationException exception = assertThrows(
+                AuthenticationException.class,
+                () -> authService.refreshTokens(null)
+        );
+        assertEquals("Invalid refresh token", exception.getMessage());
+        verify(auditLogService).publish(AuditEventType.TOKEN_REFRESH_FAILURE, null, null);
+    }
+
+    @Test
+    void givenAccessTokenInsteadOfRefreshToken_whenRefreshTokens_thenThrowsAuthenticationException() {
         // GIVEN
-        String refreshToken = "valid-refresh-token";
         UserAuthentication userAuth = new UserAuthentication(1L, "test@example.com", Set.of(Role.ROLE_USER));
+        when(jwtService.verifyRefreshToken("access-token"))
+                .thenReturn(TokenVerification.valid(userAuth, Long.MAX_VALUE, null, null));
 
-        when(jwtService.toAuthentication(refreshToken)).thenReturn(Optional.of(userAuth));
+        // WHEN / THEN
+        AuthenticationException exception = assertThrows(
+                AuthenticationException.class,
+                () -> authService.refreshTokens("access-token")
+        );
+        assertEquals("Invalid refresh token", exception.getMessage());
+    }
+
+    @Test
+    void givenValidAuthButUserNotFound_whenRefreshTokens_thenThrowsAuthenticationException() {
+        // GIVEN
+        String refreshToken = "valid-refresh-token";
+        when(jwtService.verifyRefreshToken(refreshToken)).thenReturn(buildRefreshTokenVerification());
         when(userRepository.findById(1L)).thenReturn(Optional.empty());
 
         // WHEN / THEN
@@ -131,6 +245,41 @@ class AuthServiceTest {
         assertEquals("Invalid refresh token", exception.getMessage());
     }
 
+    private TokenVerification buildRefreshTokenVerification() {
+        UserAuthentication userAuth = new UserAuthentication(1L, "test@example.com", Set.of(Role.ROLE_USER));
+        return TokenVerification.valid(userAuth, Long.MAX_VALUE, TOKEN_ID.toString(), FAMILY_ID.toString());
+    }
+
+    @Test
+    void givenAccessAndRefreshTokens_whenLogout_thenRevokesAccessTokenAndRefreshTokenFamily() {
+        // GIVEN
+        UserAuthentication userAuth = new UserAuthentication(1L, "test@example.com", Set.of(Role.ROLE_USER));
+        UUID accessTokenId = UUID.fromString("00000000-0000-0000-0000-000000000003");
+        when(jwtService.verify("access-token"))
+                .thenReturn(TokenVerification.valid(userAuth, 946720800000L, accessTokenId.toString(), null));
+        when(jwtService.verifyRefreshToken("refresh-token")).thenReturn(buildRefreshTokenVerification());
+
+        // WHEN
+        authService.logout("access-token", "refresh-token");
+
+        // THEN
+        verify(tokenRevocationService).revoke(accessTokenId, Instant.ofEpochMilli(946720800000L));
+        verify(refreshTokenService).revokeFamily(FAMILY_ID);
+    }
+
+    @Test
+    void givenRevokedAccessToken_whenLogout_thenThrowsAuthenticationException() {
+        // GIVEN
+        when(jwtService.verify("revoked-token")).thenReturn(TokenVerification.REVOKED);
+
+        // WHEN / THEN
+        AuthenticationException exception = assertThrows(
+                AuthenticationException.class,
+                () -> authService.logout("revoked-token", null)
+        );
+        assertEquals("Invalid access token", exception.getMessage());
+    }
+
     private User buildTestUser() {
         return User.builder()
                 .id(1L)
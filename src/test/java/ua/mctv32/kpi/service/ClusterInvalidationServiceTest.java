@@ -0,0 +1,96 @@
+package ua.mctv32.kpi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterInvalidationServiceTest {
+
+    // e.g. jdbc:postgresql://localhost:5432/kpi with the Postgres of docker/docker-compose.yaml
+    private static final String POSTGRES_URL = System.getenv("KPI_TEST_POSTGRES_URL");
+
+    @Test
+    void givenBurstOfPayloads_whenDispatch_thenPassesDistinctKeysPerTopicOnce() {
+        // GIVEN
+        ClusterInvalidationService service = service("jdbc:h2:mem:", 10);
+        List<Set<String>> users = new ArrayList<>();
+        AtomicInteger resyncs = new AtomicInteger();
+        service.subscribe("users", users::add, resyncs::incrementAndGet);
+        service.subscribe("revoked-tokens", keys -> fail("no keys were published"), resyncs::incrementAndGet);
+
+        // WHEN
+        service.dispatch(List.of("users:1", "users:2", "users:1", "unknown:1", "malformed", "users:3"));
+
+        // THEN
+        assertEquals(List.of(Set.of("1", "2", "3")), users);
+        assertEquals(0, resyncs.get());
+    }
+
+    @Test
+    void givenMoreKeysThanMaxKeys_whenDispatch_thenResyncsTheTopic() {
+        // GIVEN
+        ClusterInvalidationService service = service("jdbc:h2:mem:", 2);
+        List<Set<String>> users = new ArrayList<>();
+        AtomicInteger resyncs = new AtomicInteger();
+        service.subscribe("users", users::add, resyncs::incrementAndGet);
+
+        // WHEN
+        service.dispatch(List.of("users:1", "users:2", "users:3"));
+
+        // THEN
+        assertTrue(users.isEmpty());
+        assertEquals(1, resyncs.get());
+    }
+
+    @Test
+    @EnabledIfEnvironmentVariable(named = "KPI_TEST_POSTGRES_URL", matches = "jdbc:postgresql:.+")
+    void givenPostgres_whenPublishAndListenerReconnects_thenDeliversKeysAndResyncs() throws InterruptedException {
+        // GIVEN
+        ClusterInvalidationService publisher = service(POSTGRES_URL, 1000);
+        ClusterInvalidationService listener = service(POSTGRES_URL, 1000);
+        BlockingQueue<Set<String>> received = new LinkedBlockingQueue<>();
+        BlockingQueue<Boolean> resyncs = new LinkedBlockingQueue<>();
+        listener.subscribe("users", received::add, () -> resyncs.add(true));
+        listener.start();
+        try {
+            // every connect resyncs
+            assertNotNull(resyncs.poll(10, TimeUnit.SECONDS));
+
+            // WHEN
+            for (int i = 0; i < 3; i++) {
+                publisher.publish("users", 1);
+                publisher.publish("users", 2);
+            }
+            Set<String> keys = received.poll(10, TimeUnit.SECONDS);
+            jdbcTemplate(POSTGRES_URL).query("select pg_terminate_backend(pid) from pg_stat_activity"
+                    + " where application_name = ?", resultSet -> { }, ClusterInvalidationService.APPLICATION_NAME);
+
+            // THEN
+            assertEquals(Set.of("1", "2"), keys);
+            assertNotNull(resyncs.poll(10, TimeUnit.SECONDS));
+        } finally {
+            listener.shutdown();
+        }
+    }
+
+    private static ClusterInvalidationService service(String url, int maxKeys) {
+        return new ClusterInvalidationService(jdbcTemplate(url), url, "postgres", "postgres", true,
+                "kpi_invalidation_test", 200, maxKeys, 100, 1000, new SimpleMeterRegistry());
+    }
+
+    private static JdbcTemplate jdbcTemplate(String url) {
+        return new JdbcTemplate(new DriverManagerDataSource(url, "postgres", "postgres"));
+    }
+}
@@ -0,0 +1,71 @@
+package ua.mctv32.kpi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ua.mctv32.kpi.exception.ServiceUnavailableException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PasswordHashingServiceTest {
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    private PasswordHashingService passwordHashingService;
+
+    @AfterEach
+    void tearDown() {
+        passwordHashingService.shutdown();
+    }
+
+    @Test
+    void givenIdleExecutor_whenMatches_thenReturnsEncoderResult() {
+        // GIVEN
+        passwordHashingService = new PasswordHashingService(passwordEncoder, 1, 1, 1, new SimpleMeterRegistry());
+        when(passwordEncoder.matches("raw-password", "encoded-password")).thenReturn(true);
+
+        // WHEN
+        boolean matches = passwordHashingService.matches("raw-password", "encoded-password").join();
+
+        // THEN
+        assertTrue(matches);
+    }
+
+    @Test
+    void givenFullQueue_whenMatches_thenThrowsServiceUnavailableException() throws InterruptedException {
+        // GIVEN
+        passwordHashingService = new PasswordHashingService(passwordEncoder, 1, 1, 5, new SimpleMeterRegistry());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(passwordEncoder.matches("raw-password", "encoded-password")).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return true;
+        });
+
+        CompletableFuture<Boolean> running = passwordHashingService.matches("raw-password", "encoded-password");
+        started.await();
+        CompletableFuture<Boolean> queued = passwordHashingService.matches("raw-password", "encoded-password");
+
+        // WHEN / THEN
+        ServiceUnavailableException exception = assertThrows(
+                ServiceUnavailableException.class,
+                () -> passwordHashingService.matches("raw-password", "encoded-password")
+        );
+        assertEquals(5, exception.getRetryAfterSeconds());
+
+        release.countDown();
+        assertTrue(running.join());
+        assertTrue(queued.join());
+    }
+}
@@ -0,0 +1,220 @@
+package ua.mctv32.kpi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ua.mctv32.kpi.domain.AuditEventType;
+import ua.mctv32.kpi.domain.Role;
+import ua.mctv32.kpi.domain.User;
+import ua.mctv32.kpi.exception.AuthenticationException;
+import ua.mctv32.kpi.repository.ReactiveUserRepository;
+import ua.mctv32.kpi.repository.UserRepository;
+import ua.mctv32.kpi.security.TokenVerification;
+import ua.mctv32.kpi.security.UserAuthentication;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the {@link AuthServiceTest} scenarios through the reactive entry points, with users coming from R2DBC.
+ */
+@ExtendWith(MockitoExtension.class)
+class ReactiveAuthServiceTest {
+
+    private static final UUID TOKEN_ID = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID FAMILY_ID = UUID.fromString("00000000-0000-0000-0000-000000000002");
+
+    @Mock
+    private JwtService jwtService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private ReactiveUserRepository reactiveUserRepository;
+
+    @Mock
+    private PasswordHashingService passwordHashingService;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
+    @Mock
+    private AuditLogService auditLogService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ReactiveAuthService reactiveAuthService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        AuthService authService = new AuthService(jwtService, userRepository, passwordHashingService,
+                refreshTokenService, tokenRevocationService, new SyncTaskExecutor(), auditLogService, meterRegistry);
+        reactiveAuthService = new ReactiveAuthService(authService, reactiveUserRepository, passwordHashingService,
+                meterRegistry);
+    }
+
+    @Test
+    void givenValidCredentials_whenLogin_thenReturnsAuthResponseDto() {
+        // GIVEN
+        User user = buildTestUser();
+        when(reactiveUserRepository.findByEmail("test@example.com")).thenReturn(Mono.just(user));
+        when(passwordHashingService.matches("raw-password", "encoded-password"))
+                .thenReturn(CompletableFuture.completedFuture(true));
+        when(jwtService.generateAccessToken(user)).thenReturn("access-token");
+        when(refreshTokenService.issue(user)).thenReturn("refresh-token");
+
+        // WHEN / THEN
+        StepVerifier.create(reactiveAuthService.login(" Test@Example.com", "raw-password"))
+                .assertNext(result -> {
+                    assertEquals("access-token", result.getAccessToken());
+                    assertEquals("refresh-token", result.getRefreshToken());
+                })
+                .verifyComplete();
+        assertEquals(1, meterRegistry.get("auth.requests").tags("operation", "login", "outcome", "success").timer().count());
+    }
+
+    @Test
+    void givenPasswordHashedWithOutdatedCost_whenLogin_thenStoresRehashedPassword() {
+        // GIVEN
+        User user = buildTestUser();
+        when(reactiveUserRepository.findByEmail("test@example.com")).thenReturn(Mono.just(user));
+        when(passwordHashingService.matches("raw-password", "encoded-password"))
+                .thenReturn(CompletableFuture.completedFuture(true));
+        when(passwordHashingService.needsRehash("encoded-password")).thenReturn(true);
+        when(passwordHashingService.encode("raw-password")).thenReturn(CompletableFuture.completedFuture("rehashed-password"));
+
+        // WHEN
+        reactiveAuthService.login("test@example.com", "raw-password").block();
+
+        // THEN
+        verify(userRepository).updatePassword(1L, "encoded-password", "rehashed-password");
+    }
+
+    @Test
+    void givenInvalidEmail_whenLogin_thenFailsWithAuthenticationException() {
+        // GIVEN
+        when(reactiveUserRepository.findByEmail("notfound@example.com")).thenReturn(Mono.empty());
+
+        // WHEN / THEN
+        StepVerifier.create(reactiveAuthService.login("notfound@example.com", "password"))
+                .expectErrorSatisfies(e -> {
+                    assertEquals(AuthenticationException.class, e.getClass());
+                    assertEquals("Invalid email or password", e.getMessage());
+                })
+                .verify();
+        verifyNoInteractions(passwordHashingService);
+        verify(auditLogService).publish(AuditEventType.LOGIN_FAILURE, null, "notfound@example.com");
+    }
+
+    @Test
+    void givenInvalidPassword_whenLogin_thenFailsAndRecordsDatabaseAndPasswordPhases() {
+        // GIVEN
+        User user = buildTestUser();
+        when(reactiveUserRepository.findByEmail("test@example.com")).thenReturn(Mono.just(user));
+        when(passwordHashingService.matches("wrong-password", "encoded-password"))
+                .thenReturn(CompletableFuture.completedFuture(false));
+
+        // WHEN / THEN
+        StepVerifier.create(reactiveAuthService.login("test@example.com", "wrong-password"))
+                .expectErrorMessage("Invalid email or password")
+                .verify();
+        verifyNoInteractions(refreshTokenService);
+        assertEquals(1, meterRegistry.get("auth.requests").tags("operation", "login", "outcome", "failure").timer().count());
+        assertEquals(1, meterRegistry.get("auth.phase").tags("operation", "login", "phase", "database").timer().count());
+        assertEquals(1, meterRegistry.get("auth.phase").tags("operation", "login", "phase", "password").timer().count());
+    }
+
+    @Test
+    void givenValidRefreshToken_whenRefreshTokens_thenReturnsNewTokens() {
+        // GIVEN
+        User user = buildTestUser();
+        when(jwtService.verifyRefreshToken("valid-refresh-token")).thenReturn(buildRefreshTokenVerification());
+        when(reactiveUserRepository.findById(1L)).thenReturn(Mono.just(user));
+        when(jwtService.generateAccessToken(user)).thenReturn("new-access-token");
+        when(refreshTokenService.rotate(user, TOKEN_ID, FAMILY_ID)).thenReturn("new-refresh-token");
+
+        // WHEN / THEN
+        StepVerifier.create(reactiveAuthService.refreshTokens("valid-refresh-token"))
+                .assertNext(result -> {
+                    assertEquals("new-access-token", result.getAccessToken());
+                    assertEquals("new-refresh-token", result.getRefreshToken());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void givenAccessTokenInsteadOfRefreshToken_whenRefreshTokens_thenFailsAndRecordsFailure() {
+        // GIVEN
+        UserAuthentication userAuth = new UserAuthentication(1L, "test@example.com", Set.of(Role.ROLE_USER));
+        when(jwtService.verifyRefreshToken("access-token"))
+                .thenReturn(TokenVerification.valid(userAuth, Long.MAX_VALUE, null, null));
+
+        // WHEN / THEN
+        StepVerifier.create(reactiveAuthService.refreshTokens("access-token"))
+                .expectErrorMessage("Invalid refresh token")
+                .verify();
+        verifyNoInteractions(reactiveUserRepository);
+        assertEquals(1, meterRegistry.get("auth.requests").tags("operation", "refresh", "outcome", "failure").timer().count());
+    }
+
+    @Test
+    void givenValidAuthButUserNotFound_whenRefreshTokens_thenFailsWithAuthenticationException() {
+        // GIVEN
+        when(jwtService.verifyRefreshToken("valid-refresh-token")).thenReturn(buildRefreshTokenVerification());
+        when(reactiveUserRepository.findById(1L)).thenReturn(Mono.empty());
+
+        // WHEN / THEN
+        StepVerifier.create(reactiveAuthService.refreshTokens("valid-refresh-token"))
+                .expectErrorMessage("Invalid refresh token")
+                .verify();
+        verifyNoInteractions(refreshTokenService);
+    }
+
+    @Test
+    void givenAccessAndRefreshTokens_whenLogout_thenRevokesAccessTokenAndRefreshTokenFamily() {
+        // GIVEN
+        UserAuthentication userAuth = new UserAuthentication(1L, "test@example.com", Set.of(Role.ROLE_USER));
+        UUID accessTokenId = UUID.fromString("00000000-0000-0000-0000-000000000003");
+        when(jwtService.verify("access-token"))
+                .thenReturn(TokenVerification.valid(userAuth, 946720800000L, accessTokenId.toString(), null));
+        when(jwtService.verifyRefreshToken("refresh-token")).thenReturn(buildRefreshTokenVerification());
+
+        // WHEN / THEN
+        StepVerifier.create(reactiveAuthService.logout("access-token", "refresh-token"))
+                .verifyComplete();
+        verify(tokenRevocationService).revoke(accessTokenId, Instant.ofEpochMilli(946720800000L));
+        verify(refreshTokenService).revokeFamily(FAMILY_ID);
+    }
+
+    private TokenVerification buildRefreshTokenVerification() {
+        UserAuthentication userAuth = new UserAuthentication(1L, "test@example.com", Set.of(Role.ROLE_USER));
+        return TokenVerification.valid(userAuth, Long.MAX_VALUE, TOKEN_ID.toString(), FAMILY_ID.toString());
+    }
+
+    private User buildTestUser() {
+        return User.builder()
+                .id(1L)
+                .email("test@example.com")
+                .password("encoded-password")
+                .roles(Set.of(Role.ROLE_USER))
+                .build();
+    }
+}
@@ -0,0 +1,127 @@
+package ua.mctv32.kpi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ua.mctv32.kpi.domain.RefreshToken;
+import ua.mctv32.kpi.domain.RefreshTokenStatus;
+import ua.mctv32.kpi.domain.Role;
+import ua.mctv32.kpi.domain.User;
+import ua.mctv32.kpi.exception.AuthenticationException;
+import ua.mctv32.kpi.repository.RefreshTokenRepository;
+import ua.mctv32.kpi.security.RefreshTokenIndex;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenServiceTest {
+
+    private static final Instant TIME = Instant.parse("2000-01-01T10:00:00Z");
+    private static final Instant EXPIRES_AT = TIME.plusSeconds(3600);
+    private static final UUID FAMILY_ID = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final UUID TOKEN_ID = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID NEXT_TOKEN_ID = UUID.fromString("00000000-0000-0000-0000-000000000003");
+
+    @Mock
+    private JwtService jwtService;
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private Clock clock;
+
+    private RefreshTokenIndex refreshTokenIndex;
+
+    private RefreshTokenService refreshTokenService;
+
+    @BeforeEach
+    void setUp() {
+        refreshTokenIndex = new RefreshTokenIndex(new SimpleMeterRegistry());
+        refreshTokenService = new RefreshTokenService(jwtService, refreshTokenRepository, refreshTokenIndex, clock);
+    }
+
+    @Test
+    void givenCurrentToken_whenRotate_thenMarksTokenUsedAndIssuesNextTokenOfFamily() {
+        // GIVEN
+        User user = buildTestUser();
+        refreshTokenIndex.put(FAMILY_ID, TOKEN_ID, EXPIRES_AT);
+        when(clock.instant()).thenReturn(TIME);
+        when(jwtService.refreshTokenExpiration(TIME)).thenReturn(EXPIRES_AT);
+        when(refreshTokenRepository.markUsed(TOKEN_ID)).thenReturn(1);
+        when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(invocation -> {
+            RefreshToken refreshToken = invocation.getArgument(0);
+            refreshToken.setId(NEXT_TOKEN_ID);
+            return refreshToken;
+        });
+        when(jwtService.generateRefreshToken(user, TIME, NEXT_TOKEN_ID, FAMILY_ID)).thenReturn("next-refresh-token");
+
+        // WHEN
+        String refreshToken = refreshTokenService.rotate(user, TOKEN_ID, FAMILY_ID);
+
+        // THEN
+        assertEquals("next-refresh-token", refreshToken);
+        assertTrue(refreshTokenIndex.isCurrent(FAMILY_ID, NEXT_TOKEN_ID));
+        assertFalse(refreshTokenIndex.isCurrent(FAMILY_ID, TOKEN_ID));
+        verify(refreshTokenRepository, never()).findById(any());
+    }
+
+    @Test
+    void givenReusedToken_whenRotate_thenRevokesFamilyAndThrowsAuthenticationException() {
+        // GIVEN
+        User user = buildTestUser();
+        refreshTokenIndex.put(FAMILY_ID, NEXT_TOKEN_ID, EXPIRES_AT);
+        when(refreshTokenRepository.findById(TOKEN_ID)).thenReturn(Optional.of(RefreshToken.builder()
+                .id(TOKEN_ID)
+                .familyId(FAMILY_ID)
+                .userId(1L)
+                .expiresAt(EXPIRES_AT)
+                .status(RefreshTokenStatus.USED)
+                .build()));
+
+        // WHEN / THEN
+        AuthenticationException exception = assertThrows(
+                AuthenticationException.class,
+                () -> refreshTokenService.rotate(user, TOKEN_ID, FAMILY_ID)
+        );
+        assertEquals("Invalid refresh token", exception.getMessage());
+        verify(refreshTokenRepository).revokeFamily(FAMILY_ID);
+        verify(refreshTokenRepository, never()).markUsed(eq(TOKEN_ID));
+        assertFalse(refreshTokenIndex.isCurrent(FAMILY_ID, NEXT_TOKEN_ID));
+    }
+
+    @Test
+    void givenTokenRotatedConcurrently_whenRotate_thenRevokesFamilyAndThrowsAuthenticationException() {
+        // GIVEN
+        User user = buildTestUser();
+        refreshTokenIndex.put(FAMILY_ID, TOKEN_ID, EXPIRES_AT);
+        when(refreshTokenRepository.markUsed(TOKEN_ID)).thenReturn(0);
+
+        // WHEN / THEN
+        assertThrows(AuthenticationException.class, () -> refreshTokenService.rotate(user, TOKEN_ID, FAMILY_ID));
+        verify(refreshTokenRepository).revokeFamily(FAMILY_ID);
+    }
+
+    private User buildTestUser() {
+        return User.builder()
+                .id(1L)
+                .email("test@example.com")
+                .password("encoded-password")
+                .roles(Set.of(Role.ROLE_USER))
+                .build();
+    }
+}
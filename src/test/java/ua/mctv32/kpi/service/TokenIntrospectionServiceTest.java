@@ -0,0 +1,124 @@
+package ua.mctv32.kpi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ua.mctv32.kpi.domain.Role;
+import ua.mctv32.kpi.dto.TokenIntrospectionResultDto;
+import ua.mctv32.kpi.exception.BadRequestException;
+import ua.mctv32.kpi.security.TokenStatus;
+import ua.mctv32.kpi.security.TokenVerification;
+import ua.mctv32.kpi.security.UserAuthentication;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class TokenIntrospectionServiceTest {
+
+    private static final int MAX_TOKENS = 100;
+    private static final int MAX_TOKEN_LENGTH = 16;
+
+    @Mock
+    private JwtService jwtService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private TokenIntrospectionService tokenIntrospectionService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        tokenIntrospectionService = new TokenIntrospectionService(jwtService, 4, MAX_TOKENS, MAX_TOKEN_LENGTH, 8,
+                meterRegistry);
+        // token "valid-<id>" belongs to user <id>, anything else is expired
+        lenient().when(jwtService.introspect(anyString())).thenAnswer(invocation -> {
+            String token = invocation.getArgument(0);
+            if (!token.startsWith("valid-")) {
+                return TokenVerification.EXPIRED;
+            }
+            long userId = Long.parseLong(token.substring("valid-".length()));
+            UserAuthentication authentication = new UserAuthentication(userId, null, Set.of(Role.ROLE_USER));
+            return TokenVerification.valid(authentication, 946720800000L, null, null);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        tokenIntrospectionService.shutdown();
+    }
+
+    @Test
+    void givenTokensSpanningSeveralSlices_whenIntrospect_thenReturnsResultsInInputOrder() {
+        // GIVEN
+        List<String> tokens = IntStream.range(0, MAX_TOKENS)
+                .mapToObj(i -> i % 3 == 0 ? "expired-" + i : "valid-" + i)
+                .toList();
+
+        // WHEN
+        List<TokenIntrospectionResultDto> results = tokenIntrospectionService.introspect(tokens);
+
+        // THEN
+        assertEquals(MAX_TOKENS, results.size());
+        for (int i = 0; i < MAX_TOKENS; i++) {
+            TokenIntrospectionResultDto result = results.get(i);
+            if (i % 3 == 0) {
+                assertFalse(result.isActive());
+                assertEquals(TokenStatus.EXPIRED, result.getReason());
+            } else {
+                assertTrue(result.isActive());
+                assertEquals(i, result.getUserId());
+                assertEquals(Set.of(Role.ROLE_USER), result.getRoles());
+                assertEquals(Instant.ofEpochMilli(946720800000L), result.getExpiresAt());
+            }
+        }
+        assertEquals(1, meterRegistry.get("token.introspection").timer().count());
+        assertEquals(34, meterRegistry.get("token.introspection.tokens").tag("status", "expired").counter().count());
+    }
+
+    @Test
+    void givenOversizedAndNullTokens_whenIntrospect_thenReportsThemMalformedWithoutVerifying() {
+        // GIVEN
+        List<String> tokens = new ArrayList<>();
+        tokens.add("x".repeat(MAX_TOKEN_LENGTH + 1));
+        tokens.add(null);
+        tokens.add("valid-1");
+
+        // WHEN
+        List<TokenIntrospectionResultDto> results = tokenIntrospectionService.introspect(tokens);
+
+        // THEN
+        assertEquals(TokenStatus.MALFORMED, results.get(0).getReason());
+        assertEquals(TokenStatus.MALFORMED, results.get(1).getReason());
+        assertTrue(results.get(2).isActive());
+        verify(jwtService, never()).introspect("x".repeat(MAX_TOKEN_LENGTH + 1));
+    }
+
+    @Test
+    void givenTooManyTokens_whenIntrospect_thenThrowsBadRequestException() {
+        // GIVEN
+        List<String> tokens = Collections.nCopies(MAX_TOKENS + 1, "valid-1");
+
+        // WHEN / THEN
+        assertThrows(BadRequestException.class, () -> tokenIntrospectionService.introspect(tokens));
+        assertThrows(BadRequestException.class, () -> tokenIntrospectionService.introspect(List.of()));
+        verify(jwtService, never()).introspect(anyString());
+    }
+}
@@ -0,0 +1,102 @@
+package ua.mctv32.kpi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ua.mctv32.kpi.domain.RevokedToken;
+import ua.mctv32.kpi.repository.RevokedTokenRepository;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationServiceTest {
+
+    private static final Instant TIME = Instant.parse("2000-01-01T10:00:00Z");
+    private static final Instant EXPIRES_AT = TIME.plusSeconds(300);
+    private static final UUID TOKEN_ID = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Mock
+    private Clock clock;
+
+    @Mock
+    private ClusterInvalidationService clusterInvalidationService;
+
+    private TokenRevocationService tokenRevocationService;
+
+    @BeforeEach
+    void setUp() {
+        when(clock.instant()).thenReturn(TIME);
+        tokenRevocationService = new TokenRevocationService(revokedTokenRepository, clock, clusterInvalidationService, 1000, 0.001,
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    void givenNothingRevoked_whenIsRevoked_thenAnswersWithoutDatabase() {
+        // WHEN
+        boolean revoked = tokenRevocationService.isRevoked(TOKEN_ID.toString());
+
+        // THEN
+        assertFalse(revoked);
+        verify(revokedTokenRepository, never()).existsById(any());
+    }
+
+    @Test
+    void givenRevokedToken_whenIsRevoked_thenConfirmsInDatabase() {
+        // GIVEN
+        tokenRevocationService.revoke(TOKEN_ID, EXPIRES_AT);
+        when(revokedTokenRepository.existsById(TOKEN_ID)).thenReturn(true);
+
+        // WHEN
+        boolean revoked = tokenRevocationService.isRevoked(TOKEN_ID.toString());
+
+        // THEN
+        assertTrue(revoked);
+        verify(revokedTokenRepository).save(new RevokedToken(TOKEN_ID, EXPIRES_AT, TIME));
+        verify(clusterInvalidationService).publish(TokenRevocationService.INVALIDATION_TOPIC, TOKEN_ID);
+    }
+
+    @Test
+    void givenExpiredRevocations_whenRemoveExpired_thenRebuildsFilterFromRemainingRevocations() {
+        // GIVEN
+        tokenRevocationService.revoke(TOKEN_ID, EXPIRES_AT);
+        when(clock.instant()).thenReturn(EXPIRES_AT);
+        when(revokedTokenRepository.streamIdsExpiringAfter(EXPIRES_AT)).thenReturn(Stream.empty());
+
+        // WHEN
+        tokenRevocationService.removeExpired();
+
+        // THEN
+        verify(revokedTokenRepository).deleteExpired(EXPIRES_AT);
+        assertFalse(tokenRevocationService.isRevoked(TOKEN_ID.toString()));
+        verify(revokedTokenRepository, never()).existsById(any());
+    }
+
+    @Test
+    void givenRevocationOnAnotherInstance_whenSync_thenTokenIsRevoked() {
+        // GIVEN
+        when(revokedTokenRepository.findIdsRevokedAfter(any())).thenReturn(List.of(TOKEN_ID));
+        when(revokedTokenRepository.existsById(TOKEN_ID)).thenReturn(true);
+
+        // WHEN
+        tokenRevocationService.sync();
+
+        // THEN
+        assertTrue(tokenRevocationService.isRevoked(TOKEN_ID.toString()));
+    }
+}
@@ -0,0 +1,153 @@
+package ua.mctv32.kpi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import ua.mctv32.kpi.domain.Role;
+import ua.mctv32.kpi.domain.User;
+import ua.mctv32.kpi.dto.UserImportErrorDto;
+import ua.mctv32.kpi.dto.UserImportReportDto;
+import ua.mctv32.kpi.repository.UserRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserImportServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Captor
+    private ArgumentCaptor<List<User>> usersCaptor;
+
+    private UserImportService userImportService;
+
+    @BeforeEach
+    void setUp() {
+        userImportService = new UserImportService(userRepository, passwordEncoder, transactionManager,
+                new ObjectMapper(), 2, 2, 10, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        userImportService.shutdown();
+    }
+
+    @Test
+    void givenNdjsonWithInvalidRows_whenImportUsers_thenInsertsValidRowsInBatchesAndReportsErrors() throws IOException {
+        // GIVEN
+        when(passwordEncoder.encode(anyString())).thenAnswer(invocation -> "encoded-" + invocation.getArgument(0));
+        // the second batch sees the user committed by the first one
+        when(userRepository.findExistingEmails(any()))
+                .thenReturn(List.of("taken@example.com"))
+                .thenReturn(List.of("first@example.com"));
+        String input = """
+                {"email": "first@example.com", "password": "one"}
+                {"email": "taken@example.com", "password": "two"}
+                not json
+                {"email": "second@example.com", "password": "three", "roles": ["ROLE_ADMIN"]}
+                {"email": "third@example.com", "password": "four", "roles": ["ROLE_ROOT"]}
+                {"email": "first@example.com", "password": "five"}
+                """;
+
+        // WHEN
+        UserImportReportDto report = userImportService.importUsers(stream(input), UserImportService.Format.NDJSON);
+
+        // THEN
+        assertEquals(2, report.getImported());
+        assertEquals(4, report.getFailed());
+        assertEquals(List.of(
+                new UserImportErrorDto(2, "Email already exists"),
+                new UserImportErrorDto(3, "Malformed JSON"),
+                new UserImportErrorDto(5, "Unknown role ROLE_ROOT"),
+                new UserImportErrorDto(6, "Email already exists")), report.getErrors());
+
+        verify(userRepository, times(2)).saveAll(usersCaptor.capture());
+        List<User> saved = new ArrayList<>();
+        usersCaptor.getAllValues().forEach(saved::addAll);
+        assertEquals(List.of(
+                new User(null, "first@example.com", "encoded-one", Set.of(Role.ROLE_USER)),
+                new User(null, "second@example.com", "encoded-three", Set.of(Role.ROLE_ADMIN))), saved);
+    }
+
+    @Test
+    void givenCsvWithHeaderAndQuotedFields_whenImportUsers_thenParsesRows() throws IOException {
+        // GIVEN
+        when(passwordEncoder.encode(anyString())).thenAnswer(invocation -> "encoded-" + invocation.getArgument(0));
+        String input = String.join("\n",
+                "email,password,roles",
+                "first@example.com,\"pa,ss \"\"word\"\"\",ROLE_USER|ROLE_ADMIN",
+                "second@example.com,secret");
+
+        // WHEN
+        UserImportReportDto report = userImportService.importUsers(stream(input), UserImportService.Format.CSV);
+
+        // THEN
+        assertEquals(2, report.getImported());
+        assertEquals(0, report.getFailed());
+        verify(userRepository).saveAll(usersCaptor.capture());
+        assertEquals(List.of(
+                new User(null, "first@example.com", "encoded-pa,ss \"word\"", Set.of(Role.ROLE_USER, Role.ROLE_ADMIN)),
+                new User(null, "second@example.com", "encoded-secret", Set.of(Role.ROLE_USER))), usersCaptor.getValue());
+    }
+
+    @Test
+    void givenTooLongAndUnhashablePasswords_whenImportUsers_thenReportsTheRowsAndImportsTheRest() throws IOException {
+        // GIVEN
+        when(passwordEncoder.encode(anyString())).thenAnswer(invocation -> {
+            String password = invocation.getArgument(0);
+            if (password.equals("unhashable")) {
+                throw new IllegalArgumentException("rejected by the encoder");
+            }
+            return "encoded-" + password;
+        });
+        String input = String.join("\n",
+                "first@example.com," + "x".repeat(72),
+                "second@example.com," + "x".repeat(73),
+                "third@example.com,unhashable",
+                "fourth@example.com,secret");
+
+        // WHEN
+        UserImportReportDto report = userImportService.importUsers(stream(input), UserImportService.Format.CSV);
+
+        // THEN
+        assertEquals(2, report.getImported());
+        assertEquals(List.of(
+                new UserImportErrorDto(2, "Password is longer than 72 bytes"),
+                new UserImportErrorDto(3, "Password hashing failed")), report.getErrors());
+        verify(userRepository, times(2)).saveAll(usersCaptor.capture());
+        assertEquals(List.of("first@example.com", "fourth@example.com"),
+                usersCaptor.getAllValues().stream().flatMap(List::stream).map(User::getEmail).toList());
+    }
+
+    private static ByteArrayInputStream stream(String input) {
+        return new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8));
+    }
+}
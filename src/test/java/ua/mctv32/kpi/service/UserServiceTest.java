@@ -0,0 +1,247 @@
+package ua.mctv32.kpi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ua.mctv32.kpi.domain.Role;
+import ua.mctv32.kpi.domain.User;
+import ua.mctv32.kpi.dto.UserDto;
+import ua.mctv32.kpi.dto.UserPageDto;
+import ua.mctv32.kpi.exception.BadRequestException;
+import ua.mctv32.kpi.exception.NotFoundException;
+import ua.mctv32.kpi.repository.UserExportRepository;
+import ua.mctv32.kpi.repository.UserRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UserExportRepository userExportRepository;
+
+    @Mock
+    private ClusterInvalidationService clusterInvalidationService;
+
+    @Captor
+    private ArgumentCaptor<Consumer<Set<String>>> invalidateCaptor;
+
+    private UserService userService;
+
+    @BeforeEach
+    void setUp() {
+        userService = new UserService(userRepository, userExportRepository, clusterInvalidationService, 100, 60_000, 5, 2,
+                3, 10, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void givenCachedUser_whenFindById_thenDoesNotQueryRepositoryAgain() {
+        // GIVEN
+        UserDto user = new UserDto(1L, "test@example.com", Set.of(Role.ROLE_USER));
+        when(userRepository.findDtoById(1L)).thenReturn(Optional.of(user));
+        userService.findById(1L);
+
+        // WHEN
+        UserDto result = userService.findById(1L);
+
+        // THEN
+        assertSame(user, result);
+        verify(userRepository, times(1)).findDtoById(1L);
+    }
+
+    @Test
+    void givenCachedUser_whenSave_thenNextFindByIdLoadsSavedUser() {
+        // GIVEN
+        User updated = buildTestUser();
+        updated.setEmail("updated@example.com");
+        when(userRepository.findDtoById(1L))
+                .thenReturn(Optional.of(new UserDto(1L, "test@example.com", Set.of(Role.ROLE_USER))))
+                .thenReturn(Optional.of(new UserDto(1L, "updated@example.com", Set.of(Role.ROLE_USER))));
+        when(userRepository.save(updated)).thenReturn(updated);
+        userService.findById(1L);
+
+        // WHEN
+        userService.save(updated);
+
+        // THEN
+        assertEquals("updated@example.com", userService.findById(1L).getEmail());
+        verify(clusterInvalidationService).publish(UserService.INVALIDATION_TOPIC, 1L);
+    }
+
+    @Test
+    void givenCachedUser_whenInvalidatedByAnotherInstance_thenNextFindByIdLoadsIt() {
+        // GIVEN
+        verify(clusterInvalidationService).subscribe(eq(UserService.INVALIDATION_TOPIC), invalidateCaptor.capture(), any());
+        when(userRepository.findDtoById(1L))
+                .thenReturn(Optional.of(new UserDto(1L, "test@example.com", Set.of(Role.ROLE_USER))))
+                .thenReturn(Optional.of(new UserDto(1L, "test@example.com", Set.of(Role.ROLE_USER, Role.ROLE_ADMIN))));
+        userService.findById(1L);
+
+        // WHEN
+        invalidateCaptor.getValue().accept(Set.of("1", "2"));
+
+        // THEN
+        assertEquals(Set.of(Role.ROLE_USER, Role.ROLE_ADMIN), userService.findById(1L).getRoles());
+    }
+
+    @Test
+    void givenConcurrentMisses_whenFindById_thenLoadsUserOnce() throws Exception {
+        // GIVEN
+        UserDto user = new UserDto(1L, "test@example.com", Set.of(Role.ROLE_USER));
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch loadReleased = new CountDownLatch(1);
+        when(userRepository.findDtoById(1L)).thenAnswer(invocation -> {
+            loadStarted.countDown();
+            loadReleased.await();
+            return Optional.of(user);
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            // WHEN
+            List<Future<UserDto>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> userService.findById(1L)));
+            }
+            assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+            loadReleased.countDown();
+
+            // THEN
+            for (Future<UserDto> result : results) {
+                assertSame(user, result.get(5, TimeUnit.SECONDS));
+            }
+            verify(userRepository, times(1)).findDtoById(1L);
+        } finally {
+            loadReleased.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void givenLoadInProgress_whenSave_thenDoesNotWaitForTheLoadAndDiscardsIt() throws Exception {
+        // GIVEN
+        User updated = buildTestUser();
+        updated.setEmail("updated@example.com");
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch loadReleased = new CountDownLatch(1);
+        when(userRepository.findDtoById(1L)).thenAnswer(invocation -> {
+            loadStarted.countDown();
+            loadReleased.await();
+            return Optional.of(new UserDto(1L, "test@example.com", Set.of(Role.ROLE_USER)));
+        }).thenReturn(Optional.of(new UserDto(1L, "updated@example.com", Set.of(Role.ROLE_USER))));
+        when(userRepository.save(updated)).thenReturn(updated);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<UserDto> stale = executor.submit(() -> userService.findById(1L));
+            assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+
+            // WHEN
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> userService.save(updated));
+            loadReleased.countDown();
+
+            // THEN
+            assertEquals("test@example.com", stale.get(5, TimeUnit.SECONDS).getEmail());
+            assertEquals("updated@example.com", userService.findById(1L).getEmail());
+        } finally {
+            loadReleased.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void givenMissingUser_whenFindById_thenThrowsNotFoundException() {
+        // GIVEN
+        when(userRepository.findDtoById(2L)).thenReturn(Optional.empty());
+
+        // WHEN / THEN
+        assertThrows(NotFoundException.class, () -> userService.findById(2L));
+    }
+
+    @Test
+    void givenIdsSpanningChunks_whenFindAllByIds_thenQueriesUncachedIdsPerChunkAndReportsMissing() {
+        // GIVEN
+        UserDto cached = new UserDto(1L, "cached@example.com", Set.of(Role.ROLE_USER));
+        UserDto second = new UserDto(2L, "second@example.com", Set.of(Role.ROLE_USER));
+        UserDto fourth = new UserDto(4L, "fourth@example.com", Set.of(Role.ROLE_ADMIN));
+        when(userRepository.findDtoById(1L)).thenReturn(Optional.of(cached));
+        userService.findById(1L);
+        when(userRepository.findDtosByIds(List.of(2L))).thenReturn(List.of(second));
+        when(userRepository.findDtosByIds(List.of(3L, 4L))).thenReturn(List.of(fourth));
+        when(userRepository.findDtosByIds(List.of(5L))).thenReturn(List.of());
+        List<UserDto> users = new ArrayList<>();
+
+        // WHEN
+        List<Long> missing = userService.findAllByIds(List.of(1L, 2L, 3L, 4L, 5L), users::add);
+
+        // THEN
+        assertEquals(List.of(cached, second, fourth), users);
+        assertEquals(List.of(3L, 5L), missing);
+    }
+
+    @Test
+    void givenTooManyIds_whenFindAllByIds_thenThrowsBadRequestException() {
+        // WHEN / THEN
+        assertThrows(BadRequestException.class,
+                () -> userService.findAllByIds(List.of(1L, 2L, 3L, 4L, 5L, 6L), user -> {
+                }));
+    }
+
+    @Test
+    void givenFullPage_whenFindPage_thenReturnsLastIdAsNextAfter() {
+        // GIVEN
+        List<UserDto> users = List.of(
+                new UserDto(4L, "a@example.com", Set.of(Role.ROLE_USER)),
+                new UserDto(7L, "b@example.com", Set.of(Role.ROLE_USER)),
+                new UserDto(9L, "c@example.com", Set.of()));
+        when(userRepository.findDtosAfter(Long.MIN_VALUE, 3)).thenReturn(users);
+        when(userRepository.findDtosAfter(9L, 3)).thenReturn(List.of());
+
+        // WHEN
+        UserPageDto first = userService.findPage(null, null);
+        UserPageDto last = userService.findPage(first.getNextAfter(), null);
+
+        // THEN
+        assertEquals(new UserPageDto(users, 9L), first);
+        assertEquals(new UserPageDto(List.of(), null), last);
+    }
+
+    @Test
+    void givenLimitOutOfRange_whenFindPage_thenThrowsBadRequestException() {
+        // WHEN / THEN
+        assertThrows(BadRequestException.class, () -> userService.findPage(null, 0));
+        assertThrows(BadRequestException.class, () -> userService.findPage(null, 11));
+    }
+
+    private User buildTestUser() {
+        return User.builder()
+                .id(1L)
+                .email("test@example.com")
+                .password("encoded-password")
+                .roles(Set.of(Role.ROLE_USER))
+                .build();
+    }
+}
@@ -0,0 +1,38 @@
+package ua.mctv32.kpi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void givenFilterFilledToExpectedInsertions_whenMightContain_thenKeepsAllKeysAndConfiguredFalsePositiveRate() {
+        // GIVEN
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        SplittableRandom random = new SplittableRandom(42);
+        long[] keys = new long[20_000];
+        for (int i = 0; i < 10_000; i++) {
+            keys[2 * i] = random.nextLong();
+            keys[2 * i + 1] = random.nextLong();
+            filter.put(keys[2 * i], keys[2 * i + 1]);
+        }
+
+        // WHEN
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(random.nextLong(), random.nextLong())) {
+                falsePositives++;
+            }
+        }
+
+        // THEN
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain(keys[2 * i], keys[2 * i + 1]));
+        }
+        assertTrue(falsePositives < 1_500, "false positives: " + falsePositives);
+        assertEquals(0.01, filter.expectedFalsePositiveRate(), 0.002);
+    }
+}
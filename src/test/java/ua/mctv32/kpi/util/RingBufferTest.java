@@ -0,0 +1,87 @@
+package ua.mctv32.kpi.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferTest {
+
+    @Test
+    void givenFullBuffer_whenOfferAndDrainAcrossLaps_thenRejectsOverflowAndKeepsOrder() {
+        // GIVEN
+        RingBuffer<Integer> buffer = new RingBuffer<>(3);
+        List<Integer> drained = new ArrayList<>();
+
+        // WHEN
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        boolean overflowAccepted = buffer.offer(4);
+        buffer.drainTo(drained::add, 3);
+        for (int i = 4; i < 7; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        buffer.drainTo(drained::add, Integer.MAX_VALUE);
+
+        // THEN
+        assertEquals(4, buffer.capacity());
+        assertFalse(overflowAccepted);
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6), drained);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void givenConcurrentProducers_whenDrain_thenEveryElementArrivesOnceInPerProducerOrder() throws InterruptedException {
+        // GIVEN
+        int producers = 4;
+        int perProducer = 50_000;
+        RingBuffer<long[]> buffer = new RingBuffer<>(1024);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (long i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(new long[]{producer, i})) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        // WHEN
+        long[] next = new long[producers];
+        boolean[] inOrder = {true};
+        int total = 0;
+        start.countDown();
+        while (total < producers * perProducer) {
+            total += buffer.drainTo(element -> {
+                int producer = (int) element[0];
+                inOrder[0] &= element[1] == next[producer];
+                next[producer] = element[1] + 1;
+            }, 256);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // THEN
+        assertTrue(inOrder[0]);
+        for (int p = 0; p < producers; p++) {
+            assertEquals(perProducer, next[p]);
+        }
+        assertEquals(0, buffer.size());
+    }
+}